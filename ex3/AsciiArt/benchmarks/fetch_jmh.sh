@@ -0,0 +1,27 @@
+#!/bin/sh
+# Downloads the JMH jars the benchmarks module compiles and runs against into benchmarks/lib,
+# verifying each against the checksum published next to it on Maven Central.
+set -eu
+
+REPOSITORY=https://repo1.maven.org/maven2
+ARTIFACTS="
+org/openjdk/jmh/jmh-core/1.37/jmh-core-1.37.jar
+org/openjdk/jmh/jmh-generator-annprocess/1.37/jmh-generator-annprocess-1.37.jar
+net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar
+org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar
+"
+
+LIB_DIRECTORY="$(dirname "$0")/lib"
+mkdir -p "$LIB_DIRECTORY"
+for artifact in $ARTIFACTS; do
+    jar="$LIB_DIRECTORY/$(basename "$artifact")"
+    curl -fsSL -o "$jar" "$REPOSITORY/$artifact"
+    expected="$(curl -fsSL "$REPOSITORY/$artifact.sha1" | cut -c1-40)"
+    actual="$(sha1sum "$jar" | cut -c1-40)"
+    if [ "$expected" != "$actual" ]; then
+        echo "Checksum mismatch: $jar" >&2
+        rm -f "$jar"
+        exit 1
+    fi
+    echo "Fetched $jar"
+done
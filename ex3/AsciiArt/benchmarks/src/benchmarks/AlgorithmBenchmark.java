@@ -0,0 +1,89 @@
+package benchmarks;
+
+import ascii_art.AsciiArtAlgorithm;
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures running the whole algorithm, in the resolutions the shell allows for the synthetic image.
+ * A cold run is of a new algorithm, so it builds the summed-area table and the level of the resolution,
+ * while a warm run is of an algorithm whose level is already built, after a change of the charset.
+ * @author Nimrod M.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+    private static final char[] DEFAULT_CHARSET = "0123456789".toCharArray();
+    // Added and removed between warm runs, only to invalidate the cached ASCII art
+    private static final char TOGGLED_CHAR = '#';
+
+    @Param({"2048"})
+    private int size;
+
+    @Param({"32", "64", "128", "256", "512", "1024"})
+    private int resolution;
+
+    @Param({"1"})
+    private int parallelism;
+
+    private Image image;
+    private SubImgCharMatcher charMatcher;
+    private AsciiArtAlgorithm warmAlgorithm;
+    private boolean toggled = false;
+
+    /**
+     * Creates the synthetic image, the shared char matcher, and the algorithm of the warm runs.
+     * @throws IllegalArgumentException If the resolution cannot divide the image of the size
+     */
+    @Setup
+    public void setup() {
+        image = SyntheticImages.create(size, size);
+        SyntheticImages.checkResolution(image, resolution);
+        charMatcher = new SubImgCharMatcher(DEFAULT_CHARSET);
+        warmAlgorithm = new AsciiArtAlgorithm(image, resolution, DEFAULT_CHARSET);
+        warmAlgorithm.setParallelism(parallelism);
+        warmAlgorithm.run();
+    }
+
+    /**
+     * @return The ASCII art of a new algorithm
+     */
+    @Benchmark
+    public char[][] runCold() {
+        AsciiArtAlgorithm asciiArtAlgorithm = new AsciiArtAlgorithm(image, resolution, charMatcher);
+        asciiArtAlgorithm.setParallelism(parallelism);
+        return asciiArtAlgorithm.run();
+    }
+
+    /**
+     * @return The ASCII art of the warm algorithm, after a change of its charset
+     */
+    @Benchmark
+    public char[][] runWarm() {
+        if (toggled) {
+            warmAlgorithm.removeChar(TOGGLED_CHAR);
+        } else {
+            warmAlgorithm.addChar(TOGGLED_CHAR);
+        }
+        toggled = !toggled;
+        return warmAlgorithm.run();
+    }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, and exports their results as JSON.
+ * Accepts the usual JMH command line options, for example:
+ * "AlgorithmBenchmark -p size=4096 -p resolution=256,512" runs only the algorithm benchmark,
+ * over a larger synthetic image, in two of its resolutions. The JMH jars (jmh-core and
+ * jmh-generator-annprocess 1.37, with jopt-simple 5.0.4 and commons-math3 3.6.1) are expected
+ * in the lib directory of the module, and are downloaded there by fetch_jmh.sh.
+ * @author Nimrod M.
+ */
+public class BenchmarkRunner {
+
+    private static final String RESULTS_FILE = "results.json";
+    private static final String USAGE_MESSAGE = "Usage: BenchmarkRunner [JMH options]";
+    private static final String OPTIONS_ERROR_MESSAGE = "Invalid options: %s%n";
+    private static final String RUNNER_ERROR_MESSAGE = "Benchmarks failed: %s%n";
+    private static final String RESULTS_MESSAGE = "Results were written to %s%n";
+
+    /**
+     * Constructs a new BenchmarkRunner object.
+     * Per this implementation, the constructor is not used
+     * and no object of this class differs from another.
+     */
+    public BenchmarkRunner() {}
+
+    /**
+     * Runs the benchmarks matching the given options (all of them, by default).
+     * @param args JMH command line options, the result file and format are overridden
+     */
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = new OptionsBuilder()
+                    .parent(new CommandLineOptions(args))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(RESULTS_FILE)
+                    .build();
+        } catch (CommandLineOptionException e) {
+            System.out.printf(OPTIONS_ERROR_MESSAGE, e.getMessage());
+            System.out.println(USAGE_MESSAGE);
+            return;
+        }
+
+        try {
+            new Runner(options).run();
+        } catch (RunnerException e) {
+            System.out.printf(RUNNER_ERROR_MESSAGE, e.getMessage());
+            return;
+        }
+        System.out.printf(RESULTS_MESSAGE, RESULTS_FILE);
+    }
+}
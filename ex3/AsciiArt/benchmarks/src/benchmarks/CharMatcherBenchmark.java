@@ -0,0 +1,113 @@
+package benchmarks;
+
+import image_char_matching.CharConverter;
+import image_char_matching.SubImgCharMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures constructing a char matcher, and looking up the character of a brightness value.
+ * Construction is measured both over a cold glyph cache, emptied before each invocation so every glyph
+ * is rendered, and over a warm one, holding every glyph of the charset.
+ * @author Nimrod M.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharMatcherBenchmark {
+
+    private static final String DIGITS_CHARSET = "digits";
+    private static final char FIRST_PRINTABLE_CHAR = ' ';
+    private static final char LAST_PRINTABLE_CHAR = '~';
+    private static final int LOOKUPS = 4096;
+
+    @Param({DIGITS_CHARSET, "printable"})
+    private String charsetName;
+
+    private char[] charset;
+    private SubImgCharMatcher charMatcher;
+    private double[] brightnessValues;
+
+    /**
+     * Creates the charset, its matcher, and the (deterministic) brightness values to look up.
+     */
+    @Setup
+    public void setup() {
+        if (DIGITS_CHARSET.equals(charsetName)) {
+            charset = "0123456789".toCharArray();
+        } else {
+            charset = new char[LAST_PRINTABLE_CHAR - FIRST_PRINTABLE_CHAR + 1];
+            for (int i = 0; i < charset.length; i++) {
+                charset[i] = (char) (FIRST_PRINTABLE_CHAR + i);
+            }
+        }
+        charMatcher = new SubImgCharMatcher(charset);
+
+        Random random = new Random(SyntheticImages.DEFAULT_SEED);
+        brightnessValues = new double[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            brightnessValues[i] = random.nextDouble();
+        }
+    }
+
+    /**
+     * Empties the glyph cache before each invocation of the benchmarks using it.
+     */
+    @State(Scope.Thread)
+    public static class ColdGlyphCache {
+
+        /**
+         * Replaces the glyph cache with an empty one, kept only in memory.
+         */
+        @Setup(Level.Invocation)
+        public void reset() {
+            CharConverter.resetGlyphCache();
+        }
+    }
+
+    /**
+     * @param coldGlyphCache Empties the glyph cache before the invocation, so every glyph is rendered
+     * @return A new matcher of the charset
+     */
+    @Benchmark
+    public SubImgCharMatcher constructCold(ColdGlyphCache coldGlyphCache) {
+        return new SubImgCharMatcher(charset);
+    }
+
+    /**
+     * @return A new matcher of the charset, whose glyphs are all in the glyph cache
+     */
+    @Benchmark
+    public SubImgCharMatcher constructWarm() {
+        return new SubImgCharMatcher(charset);
+    }
+
+    /**
+     * Looks up the characters of all the brightness values.
+     * @param blackhole Consumes the characters, so the lookups are not eliminated
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void lookup(Blackhole blackhole) {
+        for (double brightness : brightnessValues) {
+            blackhole.consume(charMatcher.getCharByImageBrightness(brightness));
+        }
+    }
+}
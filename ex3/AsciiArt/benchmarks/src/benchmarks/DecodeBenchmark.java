@@ -0,0 +1,66 @@
+package benchmarks;
+
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding an image file to an Image, the first stage of every conversion.
+ * @author Nimrod M.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({"512", "2048", "4096"})
+    private int size;
+
+    @Param({"png", "jpeg"})
+    private String format;
+
+    private File imageFile;
+
+    /**
+     * Writes the synthetic image of the benchmark's size and format.
+     * @throws IOException If the image could not be written
+     */
+    @Setup
+    public void setup() throws IOException {
+        imageFile = SyntheticImages.writeTempFile(size, size, format);
+    }
+
+    /**
+     * Deletes the image written by the setup.
+     */
+    @TearDown
+    public void tearDown() {
+        imageFile.delete();
+    }
+
+    /**
+     * @return The decoded image
+     * @throws IOException If the image could not be decoded
+     */
+    @Benchmark
+    public Image decode() throws IOException {
+        return new Image(imageFile.getPath());
+    }
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import ascii_art.AsciiArtAlgorithm;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures outputting the ASCII art of the synthetic image, through both output implementations.
+ * The console output writes to a stream discarding its bytes, so it measures the encoding
+ * and the writing of the frame rather than the speed of a terminal (or of JMH draining the output).
+ * @author Nimrod M.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputBenchmark {
+
+    private static final int IMAGE_SIZE = 2048;
+    private static final String HTML_FONT = "Courier New";
+    private static final String TEMP_FILE_PREFIX = "ascii_art";
+
+    @Param({"128", "512"})
+    private int resolution;
+
+    private char[][] asciiArt;
+    private ConsoleAsciiOutput consoleAsciiOutput;
+    private File htmlFile;
+    private File compressedHtmlFile;
+
+    /**
+     * Runs the algorithm over the synthetic image, and creates the files to output to.
+     * @throws IOException If the files could not be created
+     */
+    @Setup
+    public void setup() throws IOException {
+        asciiArt = new AsciiArtAlgorithm(SyntheticImages.create(IMAGE_SIZE, IMAGE_SIZE), resolution,
+                "0123456789".toCharArray()).run();
+        consoleAsciiOutput = new ConsoleAsciiOutput(new PrintStream(OutputStream.nullOutputStream()));
+        htmlFile = File.createTempFile(TEMP_FILE_PREFIX, ".html");
+        compressedHtmlFile = File.createTempFile(TEMP_FILE_PREFIX, ".html" + HtmlAsciiOutput.GZIP_EXTENSION);
+    }
+
+    /**
+     * Deletes the files created by the setup.
+     */
+    @TearDown
+    public void tearDown() {
+        htmlFile.delete();
+        compressedHtmlFile.delete();
+    }
+
+    /**
+     * Outputs the ASCII art to the console.
+     */
+    @Benchmark
+    public void console() {
+        consoleAsciiOutput.out(asciiArt);
+    }
+
+    /**
+     * Outputs the ASCII art to an HTML file.
+     */
+    @Benchmark
+    public void html() {
+        new HtmlAsciiOutput(htmlFile.getPath(), HTML_FONT, false).out(asciiArt);
+    }
+
+    /**
+     * Outputs the ASCII art to a compressed HTML file.
+     */
+    @Benchmark
+    public void compressedHtml() {
+        new HtmlAsciiOutput(compressedHtmlFile.getPath(), HTML_FONT, true).out(asciiArt);
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import ascii_art.AsciiArtAlgorithm;
+import ascii_art.MatchingMode;
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures running the algorithm in the shape matching mode, whose cost is thresholding every sub image
+ * to a bitmap and comparing it to the glyphs. The level of the resolution and the shape matcher are
+ * already built, so only the matching is measured, as after a switch of the matching mode.
+ * @author Nimrod M.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShapeMatchingBenchmark {
+
+    private static final char[] DEFAULT_CHARSET = "0123456789".toCharArray();
+
+    @Param({"2048"})
+    private int size;
+
+    @Param({"128", "256", "512"})
+    private int resolution;
+
+    @Param({"1"})
+    private int parallelism;
+
+    private AsciiArtAlgorithm algorithm;
+
+    /**
+     * Creates the synthetic image and its algorithm, building the level of the resolution and the shape matcher.
+     * @throws IllegalArgumentException If the resolution cannot divide the image of the size
+     */
+    @Setup
+    public void setup() {
+        Image image = SyntheticImages.create(size, size);
+        SyntheticImages.checkResolution(image, resolution);
+        algorithm = new AsciiArtAlgorithm(image, resolution, DEFAULT_CHARSET);
+        algorithm.setParallelism(parallelism);
+        algorithm.setMatchingMode(MatchingMode.SHAPE);
+        algorithm.run();
+    }
+
+    /**
+     * @return The ASCII art of the algorithm, matched by shape again
+     */
+    @Benchmark
+    public char[][] runShape() {
+        // Switching the mode back and forth only invalidates the cached ASCII art
+        algorithm.setMatchingMode(MatchingMode.BRIGHTNESS);
+        algorithm.setMatchingMode(MatchingMode.SHAPE);
+        return algorithm.run();
+    }
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import image.BaseImage;
+import image.Image;
+import image.PaddedImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures dividing a padded image to sub images, and calculating their brightness directly
+ * (pixel by pixel, rather than through the brightness pyramid of the algorithm).
+ * @author Nimrod M.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubImageBenchmark {
+
+    @Param({"512", "2048"})
+    private int size;
+
+    @Param({"32", "128", "512"})
+    private int resolution;
+
+    private PaddedImage paddedImage;
+    private BaseImage[][] subImages;
+
+    /**
+     * Creates the padded synthetic image, and its sub images for the brightness benchmark.
+     * @throws IllegalArgumentException If the resolution cannot divide the image of the size
+     */
+    @Setup
+    public void setup() {
+        Image image = SyntheticImages.create(size, size);
+        SyntheticImages.checkResolution(image, resolution);
+        // Padded to powers of 2, as the algorithm pads by default
+        paddedImage = new PaddedImage(image);
+        subImages = paddedImage.getSubImages(resolution);
+    }
+
+    /**
+     * @return The sub images of the padded image
+     */
+    @Benchmark
+    public BaseImage[][] getSubImages() {
+        return paddedImage.getSubImages(resolution);
+    }
+
+    /**
+     * @return The sum of the brightness of all the sub images
+     */
+    @Benchmark
+    public double getSubImagesBrightness() {
+        double brightnessSum = 0;
+        for (BaseImage[] row : subImages) {
+            for (BaseImage subImage : row) {
+                brightnessSum += subImage.getImageBrightness();
+            }
+        }
+        return brightnessSum;
+    }
+
+    /**
+     * @return The brightness of the whole padded image
+     */
+    @Benchmark
+    public double getImageBrightness() {
+        return paddedImage.getImageBrightness();
+    }
+}
@@ -0,0 +1,119 @@
+package benchmarks;
+
+import image.Image;
+import image.PaddedImage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic images for the benchmarks, so every run (and every machine) measures
+ * the same input. Each image is a smooth gradient overlaid with concentric rings and seeded noise,
+ * so sub images vary in brightness across the whole range, and encoders cannot compress it trivially.
+ * @author Nimrod M.
+ */
+public class SyntheticImages {
+
+    /**
+     * The seed of the noise of all the benchmark images.
+     */
+    public static final long DEFAULT_SEED = 0x41534349L;
+    private static final int MAX_CHANNEL = 255;
+    private static final int OPAQUE_ALPHA = 0xFF000000;
+    private static final int RING_PERIOD = 64;
+    private static final int RING_AMPLITUDE = 64;
+    private static final int NOISE_AMPLITUDE = 32;
+    private static final String TEMP_FILE_PREFIX = "synthetic";
+    private static final String INVALID_RESOLUTION_MESSAGE =
+            "Resolution %d does not divide the padded %dx%d image, or exceeds its width";
+
+    /**
+     * Constructs a new SyntheticImages object.
+     * Per this implementation, the constructor is not used
+     * and no object of this class differs from another.
+     */
+    public SyntheticImages() {}
+
+    /**
+     * Creates the packed pixels of a synthetic image.
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param seed The seed of the noise, the same seed always creates the same pixels
+     * @return The pixels of the image, packed as ARGB, row after row
+     */
+    public static int[] createPixels(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        double centerRow = height / 2.0;
+        double centerCol = width / 2.0;
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                double distance = Math.hypot(row - centerRow, col - centerCol);
+                int gradient = (int) ((long) MAX_CHANNEL * (row + col) / Math.max(1, width + height - 2));
+                int ring = (int) (RING_AMPLITUDE * Math.sin(2 * Math.PI * distance / RING_PERIOD));
+                int noise = random.nextInt(2 * NOISE_AMPLITUDE + 1) - NOISE_AMPLITUDE;
+                int red = clamp(gradient + ring + noise);
+                int green = clamp(gradient - ring + noise);
+                int blue = clamp(MAX_CHANNEL - gradient + noise);
+                pixels[row * width + col] = OPAQUE_ALPHA | (red << 16) | (green << 8) | blue;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Creates a synthetic image, with the default seed.
+     * @param width The width of the image
+     * @param height The height of the image
+     * @return The image
+     */
+    public static Image create(int width, int height) {
+        return new Image(createPixels(width, height, DEFAULT_SEED), width, height);
+    }
+
+    /**
+     * Checks that an image can be divided to sub images in a resolution, as the algorithm divides it
+     * (padded to powers of 2, with no more sub images in a row than pixels). JMH would otherwise report
+     * an arbitrary exception of a combination of parameters that cannot run, such as a resolution
+     * larger than the size, and leave it out of the results.
+     * @param image The image to divide
+     * @param resolution The number of sub images in a row
+     * @throws IllegalArgumentException If the image cannot be divided in the resolution
+     */
+    public static void checkResolution(Image image, int resolution) {
+        if ((resolution > image.getWidth()) || !new PaddedImage(image).isEvenlyDivided(resolution)) {
+            throw new IllegalArgumentException(String.format(INVALID_RESOLUTION_MESSAGE,
+                    resolution, image.getWidth(), image.getHeight()));
+        }
+    }
+
+    /**
+     * Writes a synthetic image, with the default seed, to a new temporary file.
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param format The informal name of the format to encode the image in (such as png or jpeg)
+     * @return The temporary file, to be deleted by the caller
+     * @throws IOException If the file could not be written, or there is no writer of the format
+     */
+    public static File writeTempFile(int width, int height, String format) throws IOException {
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        bufferedImage.setRGB(0, 0, width, height, createPixels(width, height, DEFAULT_SEED), 0, width);
+        File file = File.createTempFile(TEMP_FILE_PREFIX, "." + format);
+        if (!ImageIO.write(bufferedImage, format, file)) {
+            file.delete();
+            throw new IOException("No writer of the image format: " + format);
+        }
+        return file;
+    }
+
+    /**
+     * @param value The value of a color channel, possibly out of range
+     * @return The value clamped to the range of a color channel
+     */
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(MAX_CHANNEL, value));
+    }
+}
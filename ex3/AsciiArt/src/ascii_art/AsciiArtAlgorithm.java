@@ -2,8 +2,24 @@ package ascii_art;
 
 import image.BaseImage;
 import image.PaddedImage;
-import image.Image;
+import image.PaddingMode;
+import image.TileBitmap;
+import image_char_matching.CharMatchingTable;
+import image_char_matching.GlyphShapeMatcher;
 import image_char_matching.SubImgCharMatcher;
+import instrumentation.Stage;
+import instrumentation.StageStatistics;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 /**
  * This class is responsible for creating an ascii art representation of an image.
@@ -11,10 +27,40 @@ import image_char_matching.SubImgCharMatcher;
  */
 public class AsciiArtAlgorithm {
 
+    /**
+     * The parallelism level in which the algorithm runs sequentially, on the calling thread.
+     */
+    public static final int SEQUENTIAL_PARALLELISM = 1;
+    // Each worker is given a few bands of rows, so that uneven bands are balanced by work stealing
+    private static final int BANDS_PER_WORKER = 4;
+    // Sub images of lower contrast are matched by their brightness, as their shape is mostly noise
+    private static final double MIN_SHAPE_CONTRAST = 0.2;
+    private static final String SPECULATION_THREAD_NAME = "resolution-speculation";
+
     private final SubImgCharMatcher charMatcher;
+    private BaseImage originalImage;
+    private PaddingMode paddingMode = PaddingMode.POWER_OF_TWO;
+    private MatchingMode matchingMode = MatchingMode.BRIGHTNESS;
+    // The shape matcher of the charset, built on the first run in the shape matching mode,
+    // and rebuilt whenever the charset changes (possibly through a shared char matcher)
+    private GlyphShapeMatcher shapeMatcher = null;
+    // The table of the charset the shape matcher was built for
+    private CharMatchingTable shapeMatcherTable = null;
     private PaddedImage destinationImage;
+    // The brightness of the sub images of the current image, in every resolution used so far.
+    // Independent of the charset, so it remains valid when the charset changes.
+    private BrightnessPyramid brightnessPyramid;
+    // Keeps the brightness pyramids of recently used images, null if not cached
+    private ImageCache imageCache = null;
     private int resolution;
     private char[][] asciiArt = null;
+    private int parallelism = SEQUENTIAL_PARALLELISM;
+    private ForkJoinPool pool = null;
+    // Whether the neighbouring resolutions are precomputed in the background after each run
+    private boolean speculative = false;
+    private ExecutorService speculationExecutor = null;
+    // The precomputation of each neighbouring resolution, by the resolution
+    private final Map<Integer, Future<?>> speculations = new HashMap<>();
 
     /**
      * Constructs a new AsciiArtAlgorithm object.
@@ -23,9 +69,75 @@ public class AsciiArtAlgorithm {
      * @param charset The characters to be used in the ascii art
      */
     public AsciiArtAlgorithm(BaseImage image, int resolution, char[] charset) {
-        destinationImage = new PaddedImage(image);
+        this(image, resolution, new SubImgCharMatcher(charset));
+    }
+
+    /**
+     * Constructs a new AsciiArtAlgorithm object, using the given char matcher for its charset.
+     * The matcher may be shared between several algorithms, in which case changes to the charset
+     * of one of them apply to all of them (without resetting the cached ASCII art of the others).
+     * @param image The image to be converted to ascii art, the image will be padded to squared dimensions
+     * @param resolution The number of sub images in each row
+     * @param charMatcher The matcher of the characters to be used in the ascii art
+     */
+    public AsciiArtAlgorithm(BaseImage image, int resolution, SubImgCharMatcher charMatcher) {
+        originalImage = image;
         this.resolution = resolution;
-        charMatcher = new SubImgCharMatcher(charset);
+        destinationImage = createPaddedImage();
+        brightnessPyramid = new BrightnessPyramid(originalImage);
+        this.charMatcher = charMatcher;
+    }
+
+    /**
+     * Constructs a new AsciiArtAlgorithm of the given configuration, running sequentially.
+     * The charset of the algorithm is a copy of the snapshot's, which later changes do not affect.
+     * @param snapshot The configuration of the algorithm
+     * @param brightnessPyramid The brightness pyramid of the snapshot's image, possibly shared
+     */
+    AsciiArtAlgorithm(AsciiArtSnapshot snapshot, BrightnessPyramid brightnessPyramid) {
+        charMatcher = new SubImgCharMatcher(snapshot.getCharTable());
+        originalImage = snapshot.getImage();
+        resolution = snapshot.getResolution();
+        paddingMode = snapshot.getPaddingMode();
+        matchingMode = snapshot.getMatchingMode();
+        destinationImage = createPaddedImage();
+        this.brightnessPyramid = brightnessPyramid;
+    }
+
+    /**
+     * Constructs a copy of the given algorithm, in its current state.
+     * @param other The algorithm to copy
+     */
+    private AsciiArtAlgorithm(AsciiArtAlgorithm other) {
+        charMatcher = new SubImgCharMatcher(other.charMatcher);
+        originalImage = other.originalImage;
+        paddingMode = other.paddingMode;
+        matchingMode = other.matchingMode;
+        shapeMatcher = other.shapeMatcher;
+        shapeMatcherTable = other.shapeMatcherTable;
+        destinationImage = other.destinationImage;
+        brightnessPyramid = other.brightnessPyramid;
+        resolution = other.resolution;
+        asciiArt = other.asciiArt;
+    }
+
+    /**
+     * Creates a copy of the algorithm in its current state, unaffected by later changes to this algorithm
+     * (and vice versa). The copy shares the brightness pyramid of the current image with this algorithm,
+     * so brightness calculated by either of them serves both. The copy runs sequentially,
+     * hence several copies may run concurrently, each on its own thread.
+     * @return A copy of the algorithm
+     */
+    public AsciiArtAlgorithm copy() {
+        return new AsciiArtAlgorithm(this);
+    }
+
+    /**
+     * @return An immutable snapshot of the current configuration of the algorithm
+     */
+    public AsciiArtSnapshot snapshot() {
+        return new AsciiArtSnapshot(
+                originalImage, resolution, paddingMode, matchingMode, charMatcher.getTable());
     }
 
     /**
@@ -46,8 +158,10 @@ public class AsciiArtAlgorithm {
         }
 
         charMatcher.addChar(c);
-        // Reset the asciiArt so that it will be recalculated - There are new characters in the charset
+        // Reset the asciiArt so that it will be recalculated - There are new characters in the charset.
+        // The brightness grids are unaffected by the charset, so only the matching will be redone.
         asciiArt = null;
+        cancelSpeculations();
     }
 
     /**
@@ -60,8 +174,40 @@ public class AsciiArtAlgorithm {
         }
 
         charMatcher.removeChar(c);
+        // Reset the asciiArt so that it will be recalculated - There are characters removed from the charset.
+        // The brightness grids are unaffected by the charset, so only the matching will be redone.
+        asciiArt = null;
+        cancelSpeculations();
+    }
+
+    /**
+     * Adds characters to the charset used in the ascii art, all at once.
+     * @param chars The characters to be added to the charset
+     */
+    public void addChars(char[] chars) {
+        if (!isAnyInCharset(chars, false)) {
+            return;
+        }
+
+        charMatcher.addChars(chars);
+        // Reset the asciiArt so that it will be recalculated - There are new characters in the charset
+        asciiArt = null;
+        cancelSpeculations();
+    }
+
+    /**
+     * Removes characters from the charset used in the ascii art, all at once.
+     * @param chars The characters to be removed from the charset
+     */
+    public void removeChars(char[] chars) {
+        if (!isAnyInCharset(chars, true)) {
+            return;
+        }
+
+        charMatcher.removeChars(chars);
         // Reset the asciiArt so that it will be recalculated - There are characters removed from the charset
         asciiArt = null;
+        cancelSpeculations();
     }
 
     /**
@@ -80,29 +226,153 @@ public class AsciiArtAlgorithm {
         }
 
         resolution = newResolution;
+        // A tile aligned padding is specific to the resolution
+        if (PaddingMode.TILE_ALIGNED == paddingMode) {
+            destinationImage = createPaddedImage();
+        }
         // Reset the asciiArt so that it will be recalculated - There's a new subimage resolution
         asciiArt = null;
     }
 
+    /**
+     * @return The way the image is padded before dividing it to sub images
+     */
+    public PaddingMode getPaddingMode() {
+        return paddingMode;
+    }
+
+    /**
+     * @param newPaddingMode The new way to pad the image before dividing it to sub images
+     */
+    public void setPaddingMode(PaddingMode newPaddingMode) {
+        if (newPaddingMode == paddingMode) {
+            return;
+        }
+
+        paddingMode = newPaddingMode;
+        destinationImage = createPaddedImage();
+        cancelSpeculations();
+        // Reset the asciiArt so that it will be recalculated - The sub images are laid differently
+        asciiArt = null;
+    }
+
+    /**
+     * @return The way the sub images are matched to characters
+     */
+    public MatchingMode getMatchingMode() {
+        return matchingMode;
+    }
+
+    /**
+     * @param newMatchingMode The new way to match the sub images to characters
+     */
+    public void setMatchingMode(MatchingMode newMatchingMode) {
+        if (newMatchingMode == matchingMode) {
+            return;
+        }
+
+        matchingMode = newMatchingMode;
+        // Reset the asciiArt so that it will be recalculated - The sub images are matched differently
+        asciiArt = null;
+    }
+
+    /**
+     * @return The number of threads the algorithm runs on
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads the algorithm runs on. The result of the algorithm
+     * is identical for every parallelism level, hence the cached ASCII art remains valid.
+     * @param newParallelism The number of threads, SEQUENTIAL_PARALLELISM to run on the calling thread
+     */
+    public void setParallelism(int newParallelism) {
+        assert newParallelism >= SEQUENTIAL_PARALLELISM;
+        if (newParallelism == parallelism) {
+            return;
+        }
+
+        parallelism = newParallelism;
+        // The pool is recreated lazily with the new parallelism level, on the next parallel run
+        if (null != pool) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * @return True if the neighbouring resolutions are precomputed in the background after each run
+     */
+    public boolean isSpeculative() {
+        return speculative;
+    }
+
+    /**
+     * Sets whether the brightness of the sub images in the neighbouring resolutions (double and half
+     * the current one) is precomputed in the background after each run, so that a following change of
+     * the resolution only has to match the precomputed brightness to characters.
+     * The precomputation runs on a single low-priority thread, and is cancelled whenever the image,
+     * the padding mode or the charset change (a later run starts it again). A run cancels
+     * the precomputation of any resolution but its own, rather than waiting for it.
+     * @param newSpeculative True to precompute the neighbouring resolutions, false to stop
+     */
+    public void setSpeculative(boolean newSpeculative) {
+        if (newSpeculative == speculative) {
+            return;
+        }
+
+        speculative = newSpeculative;
+        if (!speculative) {
+            cancelSpeculations();
+            if (null != speculationExecutor) {
+                speculationExecutor.shutdown();
+                speculationExecutor = null;
+            }
+        }
+    }
+
     /**
      * @param newImage The new image to be converted to ascii art
      */
     public void setImage(BaseImage newImage) {
-        destinationImage = new PaddedImage(newImage);
-        // Reset the asciiArt so that it will be recalculated - There's a new image
+        cancelSpeculations();
+        originalImage = newImage;
+        destinationImage = createPaddedImage();
+        // Reset the asciiArt and brightness pyramid so that they will be recalculated - There's a new image.
+        // An image of the cache brings back its pyramid, with every resolution it was used in.
+        brightnessPyramid = getBrightnessPyramid();
         asciiArt = null;
     }
 
     /**
-     * @return The image to be converted to ASCII art
+     * Sets the cache of the images, whose brightness pyramids are kept in the cache with them,
+     * so switching back to a cached image does not recalculate its brightness.
+     * @param newImageCache The cache of the images
+     */
+    public void setImageCache(ImageCache newImageCache) {
+        BrightnessPyramid currentPyramid = brightnessPyramid;
+        imageCache = newImageCache;
+        // The pyramid of the current image is kept in the cache, unless the cache already has one
+        brightnessPyramid = imageCache.getBrightnessPyramid(originalImage, () -> currentPyramid);
+    }
+
+    /**
+     * @return The image to be converted to ASCII art, padded according to the padding mode
      */
-    public BaseImage getImage() {
+    public PaddedImage getImage() {
         return destinationImage;
     }
 
     /**
      * Runs the algorithm and returns the ascii art representation of the image.
      * If the ASCII art was already calculated, the cached version will be returned.
+     * The brightness of the sub images is taken from the brightness pyramid of the image,
+     * so the cost of the algorithm is proportional to the number of sub images, not pixels.
+     * The pyramid keeps every resolution used, so after a change of the charset
+     * only the matching of brightness values to characters is redone.
+     * The tiling and matching stages are recorded in the global stage statistics.
      * @return The ASCII art representation of the image
      */
     public char[][] run() {
@@ -111,17 +381,262 @@ public class AsciiArtAlgorithm {
             return asciiArt;
         }
 
-        Image[][] subImages = destinationImage.getSubImages(resolution);
-        char[][] asciiArt = new char[subImages.length][subImages[0].length];
-        for (int i = 0; i < subImages.length; i++) {
-            for (int j = 0; j < subImages[i].length; j++) {
-                Image currentSubImage = subImages[i][j];
-                double brightness = currentSubImage.getImageBrightness();
-                asciiArt[i][j] = charMatcher.getCharByImageBrightness(brightness);
+        // A precomputation of the current resolution is waited for, the others would only compete with the run
+        cancelSpeculationsExcept(resolution);
+
+        StageStatistics statistics = StageStatistics.getGlobal();
+        boolean inParallel = SEQUENTIAL_PARALLELISM != parallelism;
+        // The levels are built by this algorithm's own runner, even if the pyramid is shared
+        double[][] brightnessGrid = statistics.time(Stage.TILING, inParallel,
+                () -> brightnessPyramid.getBrightnessGrid(destinationImage, resolution, this::forEachRow));
+        // A single snapshot of the charset serves the whole run, even if the charset changes meanwhile
+        CharMatchingTable charTable = charMatcher.getTable();
+        char[][] asciiArt = new char[brightnessGrid.length][resolution];
+        statistics.time(Stage.MATCHING, inParallel, () -> {
+            if (MatchingMode.SHAPE == matchingMode) {
+                // The charset may have changed through a shared char matcher, without resetting this algorithm
+                if (charTable != shapeMatcherTable) {
+                    shapeMatcher = new GlyphShapeMatcher(charTable.getCharset());
+                    shapeMatcherTable = charTable;
+                }
+                forEachRow(brightnessGrid.length,
+                        row -> matchRowByShape(row, brightnessGrid[row], asciiArt[row], charTable));
+            } else {
+                forEachRow(brightnessGrid.length,
+                        row -> matchRow(brightnessGrid[row], asciiArt[row], charTable));
             }
-        }
+            return asciiArt;
+        });
 
         this.asciiArt = asciiArt;
+        if (speculative) {
+            speculate();
+        }
         return asciiArt;
     }
+
+    /**
+     * Starts precomputing the brightness of the sub images in half and double the current resolution
+     * (the coarser one first, as it is derived from the current one almost for free),
+     * cancelling any previous precomputation. Resolutions out of the image's boundaries are skipped.
+     */
+    private void speculate() {
+        cancelSpeculations();
+        if (null == speculationExecutor) {
+            speculationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, SPECULATION_THREAD_NAME);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+
+        BrightnessPyramid pyramid = brightnessPyramid;
+        for (int neighbourResolution : new int[]{resolution / 2, resolution * 2}) {
+            if (!isWithinBoundaries(neighbourResolution)) {
+                continue;
+            }
+            PaddedImage paddedImage = (PaddingMode.TILE_ALIGNED == paddingMode) ?
+                    new PaddedImage(originalImage, neighbourResolution) : destinationImage;
+            speculations.put(neighbourResolution, speculationExecutor.submit(() -> pyramid.getBrightnessGrid(
+                    paddedImage, neighbourResolution, AsciiArtAlgorithm::forEachRowUntilCancelled)));
+        }
+    }
+
+    /**
+     * Cancels the precomputation of the neighbouring resolutions, if any.
+     * A level cancelled in the middle is discarded, and levels already built are kept.
+     */
+    private void cancelSpeculations() {
+        for (Future<?> speculation : speculations.values()) {
+            speculation.cancel(true);
+        }
+        speculations.clear();
+    }
+
+    /**
+     * Cancels the precomputation of the neighbouring resolutions, except for the given resolution.
+     * @param keptResolution The resolution whose precomputation (if any) is kept
+     */
+    private void cancelSpeculationsExcept(int keptResolution) {
+        Iterator<Map.Entry<Integer, Future<?>>> iterator = speculations.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Future<?>> speculation = iterator.next();
+            if (keptResolution != speculation.getKey()) {
+                speculation.getValue().cancel(true);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @param newResolution A resolution
+     * @return True if the resolution is within the boundaries the resolution command allows
+     */
+    private boolean isWithinBoundaries(int newResolution) {
+        int minCharsInRow = Math.max(1, destinationImage.getWidth() / destinationImage.getHeight());
+        return (newResolution <= destinationImage.getWidth()) && (newResolution >= minCharsInRow);
+    }
+
+    /**
+     * @param chars The characters to be checked
+     * @param inCharset True to check for a character in the charset, false for a character not in it
+     * @return True if any of the characters is (or is not, respectively) in the charset
+     */
+    private boolean isAnyInCharset(char[] chars, boolean inCharset) {
+        for (char c : chars) {
+            if (charMatcher.inCharset(c) == inCharset) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The brightness pyramid of the current image, from the image cache if it is cached
+     */
+    private BrightnessPyramid getBrightnessPyramid() {
+        if (null == imageCache) {
+            return new BrightnessPyramid(originalImage);
+        }
+        return imageCache.getBrightnessPyramid(originalImage, () -> new BrightnessPyramid(originalImage));
+    }
+
+    /**
+     * The padding is recorded in the global stage statistics.
+     * @return The original image padded according to the padding mode (and resolution, if relevant)
+     */
+    private PaddedImage createPaddedImage() {
+        return StageStatistics.getGlobal().time(Stage.PADDING, () -> {
+            if (PaddingMode.TILE_ALIGNED == paddingMode) {
+                return new PaddedImage(originalImage, resolution);
+            }
+            return new PaddedImage(originalImage);
+        });
+    }
+
+    /**
+     * Matches each brightness value in the given row to the closest character in the charset.
+     * @param brightnessRow The brightness values of a row of sub images
+     * @param asciiRow The row to write the characters to
+     * @param charTable The table of the charset
+     */
+    private static void matchRow(double[] brightnessRow, char[] asciiRow, CharMatchingTable charTable) {
+        for (int col = 0; col < brightnessRow.length; col++) {
+            asciiRow[col] = charTable.getCharByImageBrightness(brightnessRow[col]);
+        }
+    }
+
+    /**
+     * Matches each sub image in the given row to the character of the closest shape, among the characters
+     * of similar brightness. Sub images of low contrast are matched by their brightness alone.
+     * @param row The row of sub images
+     * @param brightnessRow The brightness values of the row of sub images
+     * @param asciiRow The row to write the characters to
+     * @param charTable The table of the charset
+     */
+    private void matchRowByShape(int row, double[] brightnessRow, char[] asciiRow,
+                                 CharMatchingTable charTable) {
+        int subImageDimension = destinationImage.getSubImageDimension(resolution);
+        // Reused by all the sub images of the row
+        int[] samples = new int[GlyphShapeMatcher.BITMAP_DIMENSION * GlyphShapeMatcher.BITMAP_DIMENSION];
+        long[] bits = new long[TileBitmap.getBitsetLength(GlyphShapeMatcher.BITMAP_DIMENSION)];
+        for (int col = 0; col < brightnessRow.length; col++) {
+            double contrast = TileBitmap.threshold(destinationImage, row * subImageDimension,
+                    col * subImageDimension, subImageDimension, GlyphShapeMatcher.BITMAP_DIMENSION, samples, bits);
+            asciiRow[col] = (contrast < MIN_SHAPE_CONTRAST) ?
+                    charTable.getCharByImageBrightness(brightnessRow[col]) :
+                    shapeMatcher.getCharByShape(bits, brightnessRow[col]);
+        }
+    }
+
+    /**
+     * Performs the given action for each row on the calling thread, stopping as soon as the thread
+     * is interrupted (by the cancellation of its task).
+     * @param rows The number of rows
+     * @param rowAction The action to perform for each row
+     * @throws CancellationException If the thread was interrupted before all the rows were performed
+     */
+    private static void forEachRowUntilCancelled(int rows, IntConsumer rowAction) {
+        for (int row = 0; row < rows; row++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+            rowAction.accept(row);
+        }
+    }
+
+    /**
+     * Performs the given action for each row, either on the calling thread or in parallel,
+     * depending on the parallelism level. Each row is passed to the action exactly once,
+     * so actions writing only to their own row give the same result in both cases.
+     * @param rows The number of rows
+     * @param rowAction The action to perform for each row
+     */
+    private void forEachRow(int rows, IntConsumer rowAction) {
+        if ((SEQUENTIAL_PARALLELISM == parallelism) || (1 == rows)) {
+            for (int row = 0; row < rows; row++) {
+                rowAction.accept(row);
+            }
+            return;
+        }
+
+        int bandRows = Math.max(1, rows / (parallelism * BANDS_PER_WORKER));
+        getPool().invoke(new RowBandTask(rowAction, 0, rows, bandRows));
+    }
+
+    /**
+     * @return The pool for the parallel runs, created with the current parallelism level if needed
+     */
+    private ForkJoinPool getPool() {
+        if (null == pool) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * A task performing an action for a band of rows, splitting it in halves until
+     * the bands are small enough to be processed directly.
+     */
+    private static class RowBandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        // Tasks are never serialized, and the action is not serializable
+        private final transient IntConsumer rowAction;
+        private final int firstRow;
+        private final int lastRow;
+        private final int bandRows;
+
+        /**
+         * @param rowAction The action to perform for each row
+         * @param firstRow The first row of the band (inclusive)
+         * @param lastRow The last row of the band (exclusive)
+         * @param bandRows The maximal number of rows to process without splitting
+         */
+        RowBandTask(IntConsumer rowAction, int firstRow, int lastRow, int bandRows) {
+            this.rowAction = rowAction;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.bandRows = bandRows;
+        }
+
+        /**
+         * Processes the band, or splits it in halves and processes each of them in parallel.
+         */
+        @Override
+        protected void compute() {
+            if (lastRow - firstRow <= bandRows) {
+                for (int row = firstRow; row < lastRow; row++) {
+                    rowAction.accept(row);
+                }
+                return;
+            }
+
+            int middleRow = (firstRow + lastRow) >>> 1;
+            invokeAll(new RowBandTask(rowAction, firstRow, middleRow, bandRows),
+                      new RowBandTask(rowAction, middleRow, lastRow, bandRows));
+        }
+    }
 }
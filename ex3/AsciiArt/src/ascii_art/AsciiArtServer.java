@@ -0,0 +1,679 @@
+package ascii_art;
+
+import ascii_output.HtmlAsciiOutput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import image.BaseImage;
+import image.ImageLoader;
+import image.PaddedImage;
+import image.PaddingMode;
+import image_char_matching.CharMatchingTable;
+import image_char_matching.SubImgCharMatcher;
+import instrumentation.Stage;
+import instrumentation.StageStatistics;
+
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local HTTP service converting images to ASCII art, for tools which would otherwise drive the shell.
+ * The server listens on the loopback address only, and handles each request on its own virtual thread.
+ * Requests naming a host other than the local one are rejected, so pages of other sites cannot reach
+ * the server through a rebound DNS name. Only a few conversions run at once, and images are rejected
+ * by their dimensions before they are decoded, so the memory of the requests is bounded.
+ * All the requests share a single image cache (with the brightness pyramids of the images)
+ * and a single cache of results, so repeated requests are served without converting again.
+ * <p>
+ * GET /convert?image=path converts an image file under the image directory of the server
+ * (the path is relative to it), and POST /convert converts the image file uploaded as the body of the request.
+ * Both accept the parameters resolution (default 128), charset (default 0123456789),
+ * format (text or html, default text), match (brightness or shape, default brightness)
+ * and padding (pow2 or aligned, default pow2), and reject resolutions that do not divide the padded image.
+ * GET /metrics reports the request latency percentiles, the cache sizes and the stage statistics,
+ * as plain text lines of a name and a value.
+ * @author Nimrod M.
+ */
+public class AsciiArtServer {
+
+    private static final String USAGE_MESSAGE = "Usage: AsciiArtServer [port [image directory]]";
+    private static final String INVALID_PORT_MESSAGE = "Port must be a number between 0 and 65535.";
+    private static final String SERVER_ERROR_MESSAGE = "Error starting the server: %s%n";
+    private static final String SERVING_MESSAGE = "Serving %s on http://%s:%d/convert%n";
+    // The working directory, when no image directory is given
+    private static final String DEFAULT_IMAGE_DIRECTORY = "";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int MAX_PORT = 65535;
+    private static final int DEFAULT_BACKLOG = 0;
+
+    private static final String CONVERT_PATH = "/convert";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String GET_METHOD = "GET";
+    private static final String POST_METHOD = "POST";
+    private static final String IMAGE_PARAMETER = "image";
+    private static final String RESOLUTION_PARAMETER = "resolution";
+    private static final String CHARSET_PARAMETER = "charset";
+    private static final String FORMAT_PARAMETER = "format";
+    private static final String MATCH_PARAMETER = "match";
+    private static final String PADDING_PARAMETER = "padding";
+    private static final String TEXT_FORMAT = "text";
+    private static final String HTML_FORMAT = "html";
+    private static final String DEFAULT_CHARSET = "0123456789";
+    private static final int DEFAULT_RESOLUTION = 128;
+
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_BAD_REQUEST = 400;
+    private static final int STATUS_FORBIDDEN = 403;
+    private static final int STATUS_NOT_FOUND = 404;
+    private static final int STATUS_METHOD_NOT_ALLOWED = 405;
+    private static final int STATUS_TOO_LARGE = 413;
+    private static final int STATUS_SERVER_ERROR = 500;
+    private static final int STATUS_UNAVAILABLE = 503;
+    private static final long CHUNKED_RESPONSE_LENGTH = 0;
+
+    private static final String NOT_FOUND_MESSAGE = "Did not execute due to incorrect path.";
+    private static final String INVALID_METHOD_MESSAGE = "Did not execute due to unsupported method.";
+    private static final String MISSING_IMAGE_MESSAGE = "Did not execute due to missing image.";
+    private static final String IMAGE_ERROR_MESSAGE = "Did not execute due to problem with image file.";
+    private static final String IMAGE_TOO_LARGE_MESSAGE =
+            "Did not execute due to image file exceeding %d bytes.";
+    private static final String IMAGE_DIMENSIONS_MESSAGE = "Did not execute due to image exceeding %d pixels.";
+    private static final String IMAGE_OUTSIDE_DIRECTORY_MESSAGE =
+            "Did not execute due to image outside the image directory.";
+    private static final String NON_LOCAL_HOST_MESSAGE = "Did not execute due to non-local host.";
+    private static final String BUSY_MESSAGE = "Did not execute due to too many requests.";
+    private static final String OUT_OF_MEMORY_MESSAGE = "Did not execute due to insufficient memory.";
+    private static final String INVALID_RESOLUTION_MESSAGE = "Did not execute due to incorrect resolution.";
+    private static final String RESOLUTION_BOUNDARIES_MESSAGE =
+            "Did not execute due to exceeding resolution boundaries.";
+    private static final String RESOLUTION_DIVISION_MESSAGE =
+            "Did not execute due to resolution not dividing the padded image (use aligned padding).";
+    private static final String EMPTY_CHARSET_MESSAGE = "Did not execute. Charset is empty.";
+    private static final String INVALID_FORMAT_MESSAGE = "Did not execute due to incorrect format.";
+    private static final String INVALID_MATCH_MESSAGE = "Did not execute due to incorrect matching mode.";
+    private static final String INVALID_PADDING_MESSAGE = "Did not execute due to incorrect padding.";
+    private static final String SERVER_ERROR_RESPONSE = "Did not execute due to an internal error.";
+
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String ALLOW_HEADER = "Allow";
+    private static final String HOST_HEADER = "Host";
+    // The names of the loopback address, which the server is bound to
+    private static final Set<String> LOCAL_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]");
+    private static final String GZIP_ENCODING = "gzip";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=";
+    private static final String HTML_CONTENT_TYPE = "text/html; charset=";
+    private static final Charset RESPONSE_CHARSET = Charset.defaultCharset();
+    private static final String HTML_FONT = "Courier New";
+    private static final String HTML_DOCUMENT_NAME = "ascii_art.html";
+    private static final char SEPARATOR = ' ';
+
+    private static final int MAX_UPLOAD_BYTES = 64 * 1024 * 1024;
+    // Each conversion may hold an upload, a decoded image and its pyramid, so only a few run at once
+    private static final int MAX_CONCURRENT_CONVERSIONS = 4;
+    private static final long CONVERSION_WAIT_SECONDS = 30;
+    // A decoded image of this many pixels takes 128MB
+    private static final long MAX_IMAGE_PIXELS = 1L << 25;
+    private static final int MAX_CACHED_CHARSETS = 256;
+    private static final int LATENCY_SAMPLES = 4096;
+    private static final double[] LATENCY_PERCENTILES = {50, 90, 99, 100};
+    private static final String[] LATENCY_PERCENTILE_NAMES = {"p50", "p90", "p99", "max"};
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // The real path of the directory GET requests may read images from
+    private final Path imageDirectory;
+    private final Semaphore conversionPermits = new Semaphore(MAX_CONCURRENT_CONVERSIONS);
+    private final ImageCache imageCache;
+    private final SnapshotConverter converter;
+    // Writes only to the responses, never to its file
+    private final HtmlAsciiOutput htmlAsciiOutput = new HtmlAsciiOutput(HTML_DOCUMENT_NAME, HTML_FONT);
+    // The tables of the charsets requested so far, as building a table renders the glyphs of its charset
+    private final ConcurrentHashMap<String, CharMatchingTable> charTables = new ConcurrentHashMap<>();
+    private final LatencyRecorder latencies = new LatencyRecorder(LATENCY_SAMPLES);
+    private final AtomicLong failedRequests = new AtomicLong();
+
+    /**
+     * Constructs a new AsciiArtServer, bound to the loopback address, which is not started yet.
+     * @param port The port to listen on, 0 for any free port
+     * @param imageDirectory The directory GET requests may read images from (including its subdirectories)
+     * @param imageCache The cache of the images, shared by all the requests
+     * @param converter The converter of the requests, whose results are shared by all the requests
+     * @throws IOException If the server could not be bound to the port, or the directory is not found
+     */
+    public AsciiArtServer(int port, String imageDirectory, ImageCache imageCache, SnapshotConverter converter)
+            throws IOException {
+        this.imageDirectory = Paths.get(imageDirectory).toRealPath();
+        this.imageCache = imageCache;
+        this.converter = converter;
+        server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), DEFAULT_BACKLOG);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(CONVERT_PATH, this::handleConvert);
+        server.createContext(METRICS_PATH, this::handleMetrics);
+    }
+
+    /**
+     * Starts handling requests, in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, waiting for the requests in progress to be handled (up to the given delay).
+     * @param delaySeconds The maximal number of seconds to wait for the requests in progress
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * @return The port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles a conversion request, responding with the ASCII art or with an error message.
+     * The request waits for one of the few conversion permits before its body is read.
+     * @param exchange The request and its response
+     */
+    private void handleConvert(HttpExchange exchange) {
+        long startTime = System.nanoTime();
+        try (exchange) {
+            try {
+                checkHost(exchange);
+                acquireConversionPermit();
+                try {
+                    convert(exchange);
+                } finally {
+                    conversionPermits.release();
+                }
+            } catch (RequestException e) {
+                failedRequests.incrementAndGet();
+                respondWithError(exchange, e.getStatus(), e.getMessage());
+            } catch (RuntimeException e) {
+                failedRequests.incrementAndGet();
+                respondWithError(exchange, STATUS_SERVER_ERROR, SERVER_ERROR_RESPONSE);
+            } catch (OutOfMemoryError e) {
+                // The memory of the failed request is released as it is abandoned, the server keeps serving
+                failedRequests.incrementAndGet();
+                respondWithError(exchange, STATUS_UNAVAILABLE, OUT_OF_MEMORY_MESSAGE);
+            }
+        } catch (IOException e) {
+            // The client is gone, there is no one to respond to
+            failedRequests.incrementAndGet();
+        } finally {
+            latencies.record(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Rejects requests naming a host other than the loopback address, as a page of another site
+     * may reach the server through a DNS name rebound to the loopback address.
+     * @param exchange The request
+     * @throws RequestException If the request names another host (or none)
+     */
+    private static void checkHost(HttpExchange exchange) throws RequestException {
+        String host = exchange.getRequestHeaders().getFirst(HOST_HEADER);
+        if (null == host) {
+            throw new RequestException(STATUS_FORBIDDEN, NON_LOCAL_HOST_MESSAGE);
+        }
+        // The port follows the last colon, after the closing bracket of an IPv6 address
+        int portIndex = host.lastIndexOf(':');
+        if (portIndex > host.lastIndexOf(']')) {
+            host = host.substring(0, portIndex);
+        }
+        if (!LOCAL_HOSTS.contains(host.toLowerCase(Locale.ROOT))) {
+            throw new RequestException(STATUS_FORBIDDEN, NON_LOCAL_HOST_MESSAGE);
+        }
+    }
+
+    /**
+     * Waits for a conversion permit, to be released once the conversion completes.
+     * @throws RequestException If no permit was released in time
+     */
+    private void acquireConversionPermit() throws RequestException {
+        try {
+            if (conversionPermits.tryAcquire(CONVERSION_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            // The server is stopping
+            Thread.currentThread().interrupt();
+        }
+        throw new RequestException(STATUS_UNAVAILABLE, BUSY_MESSAGE);
+    }
+
+    /**
+     * Converts the image of the request, and responds with its ASCII art.
+     * @param exchange The request and its response
+     * @throws RequestException If the request is invalid
+     * @throws IOException If the response could not be sent
+     */
+    private void convert(HttpExchange exchange) throws RequestException, IOException {
+        // A context handles every path it prefixes, only its own path is served
+        if (!CONVERT_PATH.equals(exchange.getRequestURI().getPath())) {
+            throw new RequestException(STATUS_NOT_FOUND, NOT_FOUND_MESSAGE);
+        }
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        BaseImage image = getImage(exchange, parameters);
+
+        int resolution = parseResolution(parameters.get(RESOLUTION_PARAMETER));
+        PaddingMode paddingMode = parsePaddingMode(parameters.get(PADDING_PARAMETER));
+        // The boundaries are the shell's, over the power of two padding in either mode
+        // (a tile aligned padding is as wide as the resolution demands, so it bounds nothing)
+        PaddedImage paddedImage = new PaddedImage(image);
+        int minCharsInRow = Math.max(1, paddedImage.getWidth() / paddedImage.getHeight());
+        if ((resolution > paddedImage.getWidth()) || (resolution < minCharsInRow)) {
+            throw new RequestException(STATUS_BAD_REQUEST, RESOLUTION_BOUNDARIES_MESSAGE);
+        }
+        // A resolution within the boundaries that does not divide the padded image would crop it
+        PaddedImage dividedImage = (PaddingMode.TILE_ALIGNED == paddingMode) ?
+                new PaddedImage(image, resolution) : paddedImage;
+        if (!dividedImage.isEvenlyDivided(resolution)) {
+            throw new RequestException(STATUS_BAD_REQUEST, RESOLUTION_DIVISION_MESSAGE);
+        }
+        String charset = parameters.getOrDefault(CHARSET_PARAMETER, DEFAULT_CHARSET);
+        if (charset.isEmpty()) {
+            throw new RequestException(STATUS_BAD_REQUEST, EMPTY_CHARSET_MESSAGE);
+        }
+        MatchingMode matchingMode = parseMatchingMode(parameters.get(MATCH_PARAMETER));
+        String format = parameters.getOrDefault(FORMAT_PARAMETER, TEXT_FORMAT);
+        if (!TEXT_FORMAT.equals(format) && !HTML_FORMAT.equals(format)) {
+            throw new RequestException(STATUS_BAD_REQUEST, INVALID_FORMAT_MESSAGE);
+        }
+
+        char[][] asciiArt = converter.convert(new AsciiArtSnapshot(
+                image, resolution, paddingMode, matchingMode, getCharTable(charset)));
+        respond(exchange, asciiArt, HTML_FORMAT.equals(format));
+    }
+
+    /**
+     * Retrieves the image of the request, referenced by a parameter of a GET request,
+     * or uploaded as the body of a POST request.
+     * @param exchange The request
+     * @param parameters The parameters of the request
+     * @return The image of the request
+     * @throws RequestException If there is no image, or it could not be read
+     * @throws IOException If the body of the request could not be read
+     */
+    private BaseImage getImage(HttpExchange exchange, Map<String, String> parameters)
+            throws RequestException, IOException {
+        String method = exchange.getRequestMethod();
+        if (GET_METHOD.equals(method)) {
+            String imagePath = parameters.get(IMAGE_PARAMETER);
+            if (null == imagePath) {
+                throw new RequestException(STATUS_BAD_REQUEST, MISSING_IMAGE_MESSAGE);
+            }
+            String imageFilename = getImageFilename(imagePath);
+            try {
+                checkDimensions(ImageLoader.readDimensions(imageFilename));
+                return imageCache.getImage(imageFilename);
+            } catch (IOException e) {
+                throw new RequestException(STATUS_BAD_REQUEST, IMAGE_ERROR_MESSAGE);
+            }
+        }
+
+        if (POST_METHOD.equals(method)) {
+            byte[] imageData;
+            try (InputStream requestBody = exchange.getRequestBody()) {
+                imageData = requestBody.readNBytes(MAX_UPLOAD_BYTES + 1);
+            }
+            if (imageData.length > MAX_UPLOAD_BYTES) {
+                throw new RequestException(
+                        STATUS_TOO_LARGE, String.format(IMAGE_TOO_LARGE_MESSAGE, MAX_UPLOAD_BYTES));
+            }
+            if (0 == imageData.length) {
+                throw new RequestException(STATUS_BAD_REQUEST, MISSING_IMAGE_MESSAGE);
+            }
+            try {
+                checkDimensions(ImageLoader.readDimensions(imageData));
+                return imageCache.getImage(imageData);
+            } catch (IOException e) {
+                throw new RequestException(STATUS_BAD_REQUEST, IMAGE_ERROR_MESSAGE);
+            }
+        }
+
+        exchange.getResponseHeaders().set(ALLOW_HEADER, GET_METHOD + ", " + POST_METHOD);
+        throw new RequestException(STATUS_METHOD_NOT_ALLOWED, INVALID_METHOD_MESSAGE);
+    }
+
+    /**
+     * Resolves the path of an image against the image directory. Links are followed,
+     * so neither ".." nor a link leads out of the directory.
+     * @param imagePath The path of the image, relative to the image directory
+     * @return The real path of the image file
+     * @throws RequestException If the file is not found, or is outside the image directory
+     */
+    private String getImageFilename(String imagePath) throws RequestException {
+        Path imageFile;
+        try {
+            imageFile = imageDirectory.resolve(imagePath).toRealPath();
+        } catch (IOException | InvalidPathException e) {
+            throw new RequestException(STATUS_BAD_REQUEST, IMAGE_ERROR_MESSAGE);
+        }
+        if (!imageFile.startsWith(imageDirectory)) {
+            throw new RequestException(STATUS_FORBIDDEN, IMAGE_OUTSIDE_DIRECTORY_MESSAGE);
+        }
+        return imageFile.toString();
+    }
+
+    /**
+     * @param dimensions The dimensions of an image, read before it is decoded
+     * @throws RequestException If the decoded image would exceed the maximal number of pixels
+     */
+    private static void checkDimensions(Dimension dimensions) throws RequestException {
+        if ((long) dimensions.width * dimensions.height > MAX_IMAGE_PIXELS) {
+            throw new RequestException(
+                    STATUS_TOO_LARGE, String.format(IMAGE_DIMENSIONS_MESSAGE, MAX_IMAGE_PIXELS));
+        }
+    }
+
+    /**
+     * @param charset The characters of the charset
+     * @return The table of the charset, built only on its first request
+     */
+    private CharMatchingTable getCharTable(String charset) {
+        CharMatchingTable charTable = charTables.get(charset);
+        if (null != charTable) {
+            return charTable;
+        }
+        if (charTables.size() >= MAX_CACHED_CHARSETS) {
+            charTables.clear();
+        }
+        return charTables.computeIfAbsent(
+                charset, key -> new SubImgCharMatcher(key.toCharArray()).getTable());
+    }
+
+    /**
+     * Responds with the given ASCII art, gzip compressed if the client accepts it.
+     * @param exchange The request and its response
+     * @param asciiArt The ASCII art
+     * @param isHtml True to respond with an HTML document, false to respond with plain text
+     * @throws IOException If the response could not be sent
+     */
+    private void respond(HttpExchange exchange, char[][] asciiArt, boolean isHtml) throws IOException {
+        String acceptedEncodings = exchange.getRequestHeaders().getFirst(ACCEPT_ENCODING_HEADER);
+        boolean compress = (null != acceptedEncodings) && acceptedEncodings.contains(GZIP_ENCODING);
+        exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER,
+                (isHtml ? HTML_CONTENT_TYPE : TEXT_CONTENT_TYPE) + RESPONSE_CHARSET.name());
+        if (compress) {
+            exchange.getResponseHeaders().set(CONTENT_ENCODING_HEADER, GZIP_ENCODING);
+        }
+        exchange.sendResponseHeaders(STATUS_OK, CHUNKED_RESPONSE_LENGTH);
+
+        try (OutputStream responseBody = compress ?
+                new GZIPOutputStream(exchange.getResponseBody()) : exchange.getResponseBody()) {
+            if (isHtml) {
+                htmlAsciiOutput.out(asciiArt, responseBody);
+            } else {
+                writeText(asciiArt, responseBody);
+            }
+        }
+    }
+
+    /**
+     * Handles a metrics request, responding with a line of a name and a value for each metric.
+     * @param exchange The request and its response
+     */
+    private void handleMetrics(HttpExchange exchange) {
+        try (exchange) {
+            try {
+                checkHost(exchange);
+            } catch (RequestException e) {
+                respondWithError(exchange, e.getStatus(), e.getMessage());
+                return;
+            }
+            if (!METRICS_PATH.equals(exchange.getRequestURI().getPath())) {
+                respondWithError(exchange, STATUS_NOT_FOUND, NOT_FOUND_MESSAGE);
+                return;
+            }
+            if (!GET_METHOD.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set(ALLOW_HEADER, GET_METHOD);
+                respondWithError(exchange, STATUS_METHOD_NOT_ALLOWED, INVALID_METHOD_MESSAGE);
+                return;
+            }
+
+            StringBuilder metrics = new StringBuilder();
+            appendMetric(metrics, "requests", latencies.getRecorded());
+            appendMetric(metrics, "failed_requests", failedRequests.get());
+            long[] percentiles = latencies.getPercentiles(LATENCY_PERCENTILES);
+            for (int i = 0; i < percentiles.length; i++) {
+                appendMetric(metrics, "latency_" + LATENCY_PERCENTILE_NAMES[i] + "_ms",
+                        percentiles[i] / NANOS_PER_MILLI);
+            }
+            appendMetric(metrics, "cached_results", converter.getCachedResults());
+            appendMetric(metrics, "image_cache_bytes", imageCache.getMemoryBytes());
+            StageStatistics statistics = StageStatistics.getGlobal();
+            for (Stage stage : Stage.values()) {
+                String prefix = "stage_" + stage.name().toLowerCase(Locale.ROOT);
+                appendMetric(metrics, prefix + "_runs", statistics.getRuns(stage));
+                appendMetric(metrics, prefix + "_total_ms",
+                        statistics.getTotalNanos(stage) / NANOS_PER_MILLI);
+            }
+
+            byte[] response = metrics.toString().getBytes(RESPONSE_CHARSET);
+            exchange.getResponseHeaders().set(
+                    CONTENT_TYPE_HEADER, TEXT_CONTENT_TYPE + RESPONSE_CHARSET.name());
+            exchange.sendResponseHeaders(STATUS_OK, response.length);
+            exchange.getResponseBody().write(response);
+        } catch (IOException e) {
+            // The client is gone, there is no one to respond to
+        }
+    }
+
+    /**
+     * Responds with an error status and message, as plain text.
+     * @param exchange The request and its response
+     * @param status The status of the response
+     * @param message The error message
+     * @throws IOException If the response could not be sent
+     */
+    private static void respondWithError(HttpExchange exchange, int status, String message)
+            throws IOException {
+        byte[] response = (message + System.lineSeparator()).getBytes(RESPONSE_CHARSET);
+        exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, TEXT_CONTENT_TYPE + RESPONSE_CHARSET.name());
+        exchange.sendResponseHeaders(status, response.length);
+        exchange.getResponseBody().write(response);
+    }
+
+    /**
+     * Writes the ASCII art as plain text, laid out as the console output lays it out.
+     * @param asciiArt The ASCII art
+     * @param outputStream The stream to write to, not closed
+     * @throws IOException If writing to the stream failed
+     */
+    private static void writeText(char[][] asciiArt, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, RESPONSE_CHARSET));
+        for (char[] row : asciiArt) {
+            for (char c : row) {
+                writer.write(c);
+                writer.write(SEPARATOR);
+            }
+            writer.write(System.lineSeparator());
+        }
+        writer.flush();
+    }
+
+    /**
+     * @param metrics The metrics to append to
+     * @param name The name of the metric
+     * @param value The value of the metric
+     */
+    private static void appendMetric(StringBuilder metrics, String name, Object value) {
+        metrics.append(name).append(' ').append(value).append(System.lineSeparator());
+    }
+
+    /**
+     * @param rawQuery The raw (still encoded) query of a request, or null if it has none
+     * @return The parameters of the query, decoded. Of repeated parameters, the last one is kept.
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (null == rawQuery) {
+            return parameters;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separatorIndex = parameter.indexOf('=');
+            if (separatorIndex < 0) {
+                continue;
+            }
+            parameters.put(URLDecoder.decode(parameter.substring(0, separatorIndex), StandardCharsets.UTF_8),
+                    URLDecoder.decode(parameter.substring(separatorIndex + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * @param token The resolution parameter, or null if it is missing
+     * @return The resolution, the default one if the parameter is missing
+     * @throws RequestException If the parameter is not a positive number
+     */
+    private static int parseResolution(String token) throws RequestException {
+        if (null == token) {
+            return DEFAULT_RESOLUTION;
+        }
+        int resolution;
+        try {
+            resolution = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            resolution = 0;
+        }
+        if (resolution <= 0) {
+            throw new RequestException(STATUS_BAD_REQUEST, INVALID_RESOLUTION_MESSAGE);
+        }
+        return resolution;
+    }
+
+    /**
+     * @param token The matching mode parameter, or null if it is missing
+     * @return The matching mode, matching by brightness if the parameter is missing
+     * @throws RequestException If the parameter is not a matching mode
+     */
+    private static MatchingMode parseMatchingMode(String token) throws RequestException {
+        if (null == token) {
+            return MatchingMode.BRIGHTNESS;
+        }
+        switch (token) {
+            case "brightness":
+                return MatchingMode.BRIGHTNESS;
+            case "shape":
+                return MatchingMode.SHAPE;
+            default:
+                throw new RequestException(STATUS_BAD_REQUEST, INVALID_MATCH_MESSAGE);
+        }
+    }
+
+    /**
+     * @param token The padding mode parameter, null if missing
+     * @return The padding mode, POWER_OF_TWO if missing
+     * @throws RequestException If the padding mode is invalid
+     */
+    private static PaddingMode parsePaddingMode(String token) throws RequestException {
+        if (null == token) {
+            return PaddingMode.POWER_OF_TWO;
+        }
+        PaddingMode paddingMode = BatchConverter.parsePaddingMode(token);
+        if (null == paddingMode) {
+            throw new RequestException(STATUS_BAD_REQUEST, INVALID_PADDING_MESSAGE);
+        }
+        return paddingMode;
+    }
+
+    /**
+     * Runs the server until the process is terminated.
+     * @param args The port to listen on, and the directory GET requests may read images from
+     *             (both optional, the directory defaults to the working directory). The memory budget
+     *             of the image cache is set by the ImageCache.MEMORY_BUDGET_PROPERTY system property.
+     */
+    public static void main(String[] args) {
+        if (args.length > 2) {
+            System.out.println(USAGE_MESSAGE);
+            return;
+        }
+
+        int port = DEFAULT_PORT;
+        if (args.length >= 1) {
+            try {
+                port = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+            if ((port < 0) || (port > MAX_PORT)) {
+                System.out.println(INVALID_PORT_MESSAGE);
+                return;
+            }
+        }
+
+        String imageDirectory = (2 == args.length) ? args[1] : DEFAULT_IMAGE_DIRECTORY;
+
+        ImageCache imageCache = new ImageCache(ImageCache.getConfiguredMemoryBudget());
+        AsciiArtServer server;
+        try {
+            server = new AsciiArtServer(port, imageDirectory, imageCache,
+                    new SnapshotConverter(imageCache, SnapshotConverter.DEFAULT_MAX_CACHED_RESULTS));
+        } catch (IOException e) {
+            System.out.printf(SERVER_ERROR_MESSAGE, e.getMessage());
+            return;
+        }
+        server.start();
+        System.out.printf(SERVING_MESSAGE, server.imageDirectory,
+                InetAddress.getLoopbackAddress().getHostAddress(), server.getPort());
+    }
+
+    /**
+     * An invalid request, responded to with an error status and message.
+     */
+    private static class RequestException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        /**
+         * @param status The status of the response
+         * @param message The error message of the response
+         */
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        /**
+         * @return The status of the response
+         */
+        int getStatus() {
+            return status;
+        }
+    }
+}
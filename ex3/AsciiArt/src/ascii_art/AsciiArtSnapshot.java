@@ -0,0 +1,113 @@
+package ascii_art;
+
+import image.BaseImage;
+import image.PaddingMode;
+import image_char_matching.CharMatchingTable;
+import image_char_matching.SubImgCharMatcher;
+
+import java.util.Objects;
+
+/**
+ * An immutable snapshot of the configuration of a conversion: the image, the resolution,
+ * the padding and matching modes, and the charset (as the table classifying brightness values).
+ * Equal snapshots always convert to the same ASCII art, hence snapshots key the results of conversions.
+ * Images are compared by identity, as an image is never modified once created.
+ * @author Nimrod M.
+ */
+public final class AsciiArtSnapshot {
+
+    private final BaseImage image;
+    private final int resolution;
+    private final PaddingMode paddingMode;
+    private final MatchingMode matchingMode;
+    private final CharMatchingTable charTable;
+
+    /**
+     * Constructs a new AsciiArtSnapshot.
+     * @param image The (original, unpadded) image to be converted
+     * @param resolution The number of sub images in each row
+     * @param paddingMode The way the image is padded before dividing it to sub images
+     * @param matchingMode The way the sub images are matched to characters
+     * @param charTable The table of the charset
+     */
+    public AsciiArtSnapshot(BaseImage image, int resolution, PaddingMode paddingMode,
+                            MatchingMode matchingMode, CharMatchingTable charTable) {
+        this.image = image;
+        this.resolution = resolution;
+        this.paddingMode = paddingMode;
+        this.matchingMode = matchingMode;
+        this.charTable = charTable;
+    }
+
+    /**
+     * Constructs a new AsciiArtSnapshot of a new charset, with the default padding and matching modes,
+     * matching as a new AsciiArtAlgorithm of the same image, resolution and charset does.
+     * @param image The (original, unpadded) image to be converted
+     * @param resolution The number of sub images in each row
+     * @param charset The characters to be used in the ascii art
+     */
+    public AsciiArtSnapshot(BaseImage image, int resolution, char[] charset) {
+        this(image, resolution, PaddingMode.POWER_OF_TWO, MatchingMode.BRIGHTNESS,
+                new SubImgCharMatcher(charset).getTable());
+    }
+
+    /**
+     * @return The (original, unpadded) image to be converted
+     */
+    public BaseImage getImage() {
+        return image;
+    }
+
+    /**
+     * @return The number of sub images in each row
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return The way the image is padded before dividing it to sub images
+     */
+    public PaddingMode getPaddingMode() {
+        return paddingMode;
+    }
+
+    /**
+     * @return The way the sub images are matched to characters
+     */
+    public MatchingMode getMatchingMode() {
+        return matchingMode;
+    }
+
+    /**
+     * @return The table of the charset
+     */
+    public CharMatchingTable getCharTable() {
+        return charTable;
+    }
+
+    /**
+     * @param other The object to compare to
+     * @return True if the other object is a snapshot of the same image and equal configuration
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof AsciiArtSnapshot otherSnapshot)) {
+            return false;
+        }
+        return (image == otherSnapshot.image) && (resolution == otherSnapshot.resolution) &&
+                (paddingMode == otherSnapshot.paddingMode) && (matchingMode == otherSnapshot.matchingMode) &&
+                charTable.equals(otherSnapshot.charTable);
+    }
+
+    /**
+     * @return The hash code of the image's identity and the configuration
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(image), resolution, paddingMode, matchingMode, charTable);
+    }
+}
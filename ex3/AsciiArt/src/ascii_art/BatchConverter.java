@@ -0,0 +1,318 @@
+package ascii_art;
+
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import image.BaseImage;
+import image.ImageLoader;
+import image.MappedImage;
+import image.PaddingMode;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-interactive conversion of a batch of images to ASCII art, with the same settings for all images.
+ * Each image is converted on its own virtual thread, while the number of images converted at once
+ * is bounded, as each conversion holds the decoded image and its brightness tables (twice its size)
+ * in memory until its output is written.
+ * @author Nimrod M.
+ */
+public class BatchConverter {
+
+    private static final String USAGE_MESSAGE =
+            "Usage: BatchConverter <directory|glob> <resolution> <charset> <console|html|html.gz> [pow2|aligned]";
+    private static final String INVALID_RESOLUTION_MESSAGE = "Resolution must be a positive number.";
+    private static final String INVALID_OUTPUT_MESSAGE = "Output method must be console, html or html.gz.";
+    private static final String INVALID_PADDING_MESSAGE = "Padding must be pow2 or aligned.";
+    private static final String LISTING_ERROR_MESSAGE = "Error listing images: %s%n";
+    private static final String IMAGE_ERROR_MESSAGE = "Did not convert \"%s\" due to problem with image file.%n";
+    private static final String IMAGE_RESOLUTION_MESSAGE =
+            "Did not convert \"%s\" due to exceeding resolution boundaries.%n";
+    private static final String IMAGE_DIVISION_MESSAGE =
+            "Did not convert \"%s\" due to resolution not dividing the padded image (use aligned padding).%n";
+    private static final String THROUGHPUT_MESSAGE =
+            "Converted %d of %d images in %.2f seconds (%.2f images/sec, %.2f MB/sec).%n";
+    private static final String HTML_FONT = "Courier New";
+    private static final String HTML_EXTENSION = ".html";
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_MB = 1024 * 1024;
+    private static final int DEFAULT_CONVERSION_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+    // The lower case extensions of the files converted, those of the readable image formats and of pixel stores
+    private static final Set<String> IMAGE_EXTENSIONS = getImageExtensions();
+
+    private final int resolution;
+    private final PaddingMode paddingMode;
+    private final SubImgCharMatcher charMatcher;
+    private final OutputMethod outputMethod;
+    private final Semaphore conversionPermits;
+    private final ConsoleAsciiOutput consoleAsciiOutput = new ConsoleAsciiOutput();
+
+    /**
+     * Constructs a new BatchConverter, converting every image with the given settings.
+     * @param resolution The number of sub images in each row
+     * @param paddingMode The way the images are padded before dividing them to sub images
+     * @param charset The characters to be used in the ascii art, shared by all the conversions
+     * @param outputMethod The output method of each image's ASCII art
+     * @param conversionConcurrency The maximal number of images converted at once
+     */
+    public BatchConverter(int resolution, PaddingMode paddingMode, char[] charset, OutputMethod outputMethod,
+                          int conversionConcurrency) {
+        this.resolution = resolution;
+        this.paddingMode = paddingMode;
+        // The charset is never modified during the batch, so a single matcher serves all the images
+        this.charMatcher = new SubImgCharMatcher(charset);
+        this.outputMethod = outputMethod;
+        this.conversionPermits = new Semaphore(conversionConcurrency);
+    }
+
+    /**
+     * Converts all the given images, each on its own virtual thread, and reports the throughput.
+     * Images which fail to convert are reported and skipped.
+     * @param imagePaths The paths of the images to convert
+     */
+    public void convertAll(List<Path> imagePaths) {
+        AtomicInteger convertedImages = new AtomicInteger();
+        AtomicLong convertedBytes = new AtomicLong();
+        long startTime = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path imagePath : imagePaths) {
+                executor.submit(() -> {
+                    if (convert(imagePath)) {
+                        convertedImages.incrementAndGet();
+                        convertedBytes.addAndGet(imagePath.toFile().length());
+                    }
+                });
+            }
+        } // Closing the executor waits for all the conversions to finish
+
+        double seconds = (System.nanoTime() - startTime) / NANOS_PER_SECOND;
+        System.out.printf(THROUGHPUT_MESSAGE, convertedImages.get(), imagePaths.size(), seconds,
+                convertedImages.get() / seconds, convertedBytes.get() / BYTES_PER_MB / seconds);
+    }
+
+    /**
+     * Converts a single image and outputs its ASCII art, holding a conversion permit
+     * from decoding the image until its output is written.
+     * @param imagePath The path of the image to convert
+     * @return True if the image was converted, false otherwise
+     */
+    private boolean convert(Path imagePath) {
+        conversionPermits.acquireUninterruptibly();
+        try {
+            return convertPermitted(imagePath);
+        } finally {
+            conversionPermits.release();
+        }
+    }
+
+    /**
+     * Converts a single image and outputs its ASCII art, once a conversion permit is held.
+     * @param imagePath The path of the image to convert
+     * @return True if the image was converted, false otherwise
+     */
+    private boolean convertPermitted(Path imagePath) {
+        BaseImage image;
+        try {
+            image = ImageLoader.load(imagePath.toString());
+        } catch (IOException e) {
+            System.out.printf(IMAGE_ERROR_MESSAGE, imagePath);
+            return false;
+        }
+
+        // Each image is converted sequentially, the images themselves are converted concurrently
+        AsciiArtAlgorithm asciiArtAlgorithm = new AsciiArtAlgorithm(image, resolution, charMatcher);
+        // Validated over the power of two padding in either mode, as in the shell
+        if (!validateResolution(asciiArtAlgorithm)) {
+            System.out.printf(IMAGE_RESOLUTION_MESSAGE, imagePath);
+            return false;
+        }
+        asciiArtAlgorithm.setPaddingMode(paddingMode);
+        // The sub images must cover the whole padded image, or its right and bottom edges would be cropped
+        if (!asciiArtAlgorithm.getImage().isEvenlyDivided(resolution)) {
+            System.out.printf(IMAGE_DIVISION_MESSAGE, imagePath);
+            return false;
+        }
+        toOutput(imagePath, asciiArtAlgorithm.run());
+        return true;
+    }
+
+    /**
+     * Outputs the ASCII art of an image, to the console or to an HTML file next to the image.
+     * @param imagePath The path of the image
+     * @param asciiArt The ASCII art of the image
+     */
+    private void toOutput(Path imagePath, char[][] asciiArt) {
+        switch (outputMethod) {
+            case CONSOLE:
+                // Each image's ASCII art is output as a whole, without interleaving with others
+                synchronized (consoleAsciiOutput) {
+                    consoleAsciiOutput.out(asciiArt);
+                }
+                break;
+            case HTML:
+                new HtmlAsciiOutput(imagePath + HTML_EXTENSION, HTML_FONT, false).out(asciiArt);
+                break;
+            case COMPRESSED_HTML:
+                new HtmlAsciiOutput(imagePath + HTML_EXTENSION + HtmlAsciiOutput.GZIP_EXTENSION,
+                        HTML_FONT, true).out(asciiArt);
+                break;
+        }
+    }
+
+    /**
+     * @param asciiArtAlgorithm The algorithm of the image to be converted
+     * @return True if the resolution is within the boundaries of the (padded) image, false otherwise
+     */
+    private boolean validateResolution(AsciiArtAlgorithm asciiArtAlgorithm) {
+        int width = asciiArtAlgorithm.getImage().getWidth();
+        int height = asciiArtAlgorithm.getImage().getHeight();
+        int minCharsInRow = Math.max(1, width / height);
+        return (resolution <= width) && (resolution >= minCharsInRow);
+    }
+
+    /**
+     * Lists the images to convert. A directory lists all the image files within it,
+     * otherwise the last element of the path is a glob pattern, matched against the image files of its parent.
+     * Files of other extensions (such as the HTML output of previous runs) are skipped.
+     * @param directoryOrGlob A path of a directory, or a glob pattern (such as images/*.jpeg)
+     * @return The paths of the images to convert, in lexicographic order
+     * @throws IOException If the directory could not be listed
+     */
+    private static List<Path> listImages(String directoryOrGlob) throws IOException {
+        Path path = Paths.get(directoryOrGlob);
+        Path directory = path;
+        String glob = "*";
+        if (!Files.isDirectory(path)) {
+            directory = (null == path.getParent()) ? Paths.get(".") : path.getParent();
+            glob = path.getFileName().toString();
+        }
+
+        List<Path> imagePaths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path imagePath : stream) {
+                if (Files.isRegularFile(imagePath) && isImageFile(imagePath)) {
+                    imagePaths.add(imagePath);
+                }
+            }
+        }
+        imagePaths.sort(null);
+        return imagePaths;
+    }
+
+    /**
+     * @param path The path of a file
+     * @return True if the file's extension is of a readable image format or of a pixel store, false otherwise
+     */
+    private static boolean isImageFile(Path path) {
+        String filename = path.getFileName().toString();
+        int extensionStart = filename.lastIndexOf('.');
+        return (extensionStart >= 0) &&
+                IMAGE_EXTENSIONS.contains(filename.substring(extensionStart).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return The lower case extensions (with the leading dot) of the readable image formats and of pixel stores
+     */
+    private static Set<String> getImageExtensions() {
+        Set<String> extensions = new HashSet<>();
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            extensions.add('.' + suffix.toLowerCase(Locale.ROOT));
+        }
+        extensions.add(MappedImage.STORE_EXTENSION);
+        return extensions;
+    }
+
+    /**
+     * @param token The output method token, as accepted by the output command
+     * @return The output method, or null if the token is invalid
+     */
+    static OutputMethod parseOutputMethod(String token) {
+        switch (token) {
+            case "console":
+                return OutputMethod.CONSOLE;
+            case "html":
+                return OutputMethod.HTML;
+            case "html.gz":
+                return OutputMethod.COMPRESSED_HTML;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param token The padding mode token, as accepted by the padding command
+     * @return The padding mode, or null if the token is invalid
+     */
+    static PaddingMode parsePaddingMode(String token) {
+        switch (token) {
+            case "pow2":
+                return PaddingMode.POWER_OF_TWO;
+            case "aligned":
+                return PaddingMode.TILE_ALIGNED;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Runs a batch conversion.
+     * @param args The directory (or glob pattern) of the images, the resolution,
+     *             the charset (all the characters, as a single argument), the output method
+     *             and optionally the padding mode (pow2 by default)
+     */
+    public static void main(String[] args) {
+        if ((4 != args.length) && (5 != args.length)) {
+            System.out.println(USAGE_MESSAGE);
+            return;
+        }
+
+        int resolution;
+        try {
+            resolution = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            resolution = 0;
+        }
+        if (resolution <= 0) {
+            System.out.println(INVALID_RESOLUTION_MESSAGE);
+            return;
+        }
+        OutputMethod outputMethod = parseOutputMethod(args[3]);
+        if (null == outputMethod) {
+            System.out.println(INVALID_OUTPUT_MESSAGE);
+            return;
+        }
+        PaddingMode paddingMode = (5 == args.length) ? parsePaddingMode(args[4]) : PaddingMode.POWER_OF_TWO;
+        if (null == paddingMode) {
+            System.out.println(INVALID_PADDING_MESSAGE);
+            return;
+        }
+
+        List<Path> imagePaths;
+        try {
+            imagePaths = listImages(args[0]);
+        } catch (IOException e) {
+            System.out.printf(LISTING_ERROR_MESSAGE, e.getMessage());
+            return;
+        }
+
+        BatchConverter batchConverter = new BatchConverter(resolution, paddingMode, args[2].toCharArray(),
+                outputMethod, DEFAULT_CONVERSION_CONCURRENCY);
+        batchConverter.convertAll(imagePaths);
+    }
+}
@@ -0,0 +1,349 @@
+package ascii_art;
+
+import image.BaseImage;
+import image.MappedImage;
+import image.PaddedImage;
+import image.SummedAreaTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * A multi-resolution pyramid of the brightness of the sub images of a single image.
+ * Each level holds the brightness of every sub image in one resolution, and is built lazily:
+ * when the level of double the resolution is already built (over the same padding), every sub image
+ * is derived from the 2x2 block of sub images covering it, without touching the image itself.
+ * Otherwise, the level is calculated from the summed-area table of the original image,
+ * which is built once, on the first level calculated. The padding is never summed,
+ * as it is accounted for analytically by the padded image.
+ * Images kept off the heap (mapped pixel stores), and images too large for a table, get no table:
+ * their levels are summed a row of sub images at a time, straight from the image.
+ * The pyramid may be used by several threads at once. No lock is held while a level is built,
+ * so building one level never blocks the use of the others. A growth listener may be notified
+ * whenever a level is built (along with the table, if it was built for the level), as the memory grows.
+ * @author Nimrod M.
+ */
+class BrightnessPyramid {
+
+    /**
+     * Performs an action for each row in a range of rows, possibly in parallel.
+     */
+    interface RowRunner {
+        /**
+         * @param rows The number of rows
+         * @param rowAction The action to perform for each row, writing only to its own row
+         */
+        void forEachRow(int rows, IntConsumer rowAction);
+    }
+
+    private final BaseImage image;
+    // Guards the map of the levels, but is never held while a level is built
+    private final ReentrantLock levelsLock = new ReentrantLock();
+    // The levels of the resolutions, including levels being built (which are completed once built)
+    private final Map<Integer, Level> levels = new HashMap<>();
+    private final ReentrantLock tableLock = new ReentrantLock();
+    private volatile SummedAreaTable brightnessTable = null;
+    // Notified after each level is built, without holding any lock of the pyramid, null if none
+    private volatile Runnable growthListener = null;
+
+    /**
+     * Constructs a new, empty, BrightnessPyramid of the given image.
+     * @param image The (original, unpadded) image to hold the brightness of
+     */
+    BrightnessPyramid(BaseImage image) {
+        this.image = image;
+    }
+
+    /**
+     * Retrieves the brightness of every sub image in the given resolution,
+     * building the level of the resolution if needed, with the given row runner.
+     * The pyramid may be shared by algorithms running on different threads,
+     * in which case each level is still built only once (by the runner of the first to need it),
+     * and the others needing it wait for it to be built. Only the level itself is waited for.
+     * If the row runner throws, the level is not built, and the pyramid is left as it was:
+     * a thread waiting for it builds it instead.
+     * @param paddedImage The image padded for the given resolution, a padding of the pyramid's image
+     * @param resolution The number of sub images in each row
+     * @param levelRowRunner Runs the calculation of the rows of the level, if it is built
+     * @return The brightness grid, a row of brightness values for each row of sub images
+     * @throws CancellationException If the thread was interrupted while waiting for another thread's build
+     */
+    double[][] getBrightnessGrid(PaddedImage paddedImage, int resolution, RowRunner levelRowRunner) {
+        int subImageDimension = paddedImage.getSubImageDimension(resolution);
+        int subImageRows = paddedImage.getSubImageRows(resolution);
+        while (true) {
+            Level level;
+            Level finerLevel = null;
+            boolean isBuilder = false;
+            levelsLock.lock();
+            try {
+                level = levels.get(resolution);
+                // A level built over another padding (of another padding mode) cannot be used, and is replaced
+                if ((null == level) || !level.hasGeometry(paddedImage, subImageDimension)) {
+                    level = new Level(subImageDimension, paddedImage.getRowPadding(),
+                            paddedImage.getColPadding(), subImageRows, resolution);
+                    levels.put(resolution, level);
+                    finerLevel = getBuiltLevel(resolution * 2);
+                    isBuilder = true;
+                }
+            } finally {
+                levelsLock.unlock();
+            }
+
+            if (isBuilder) {
+                buildLevel(level, finerLevel, paddedImage, resolution, levelRowRunner);
+                return level.brightness;
+            }
+            if (level.awaitBuilt()) {
+                return level.brightness;
+            }
+            // The builder of the level failed (or was cancelled), so the level is built again
+        }
+    }
+
+    /**
+     * Sets the listener notified after each level is built, once the pyramid's memory grew.
+     * The listener is called on the building thread, without holding any lock of the pyramid,
+     * so it may ask the pyramid for its memory.
+     * @param newGrowthListener The listener, null for none
+     */
+    void setGrowthListener(Runnable newGrowthListener) {
+        growthListener = newGrowthListener;
+    }
+
+    /**
+     * @return The number of bytes the levels and the summed-area table occupy in memory (approximately)
+     */
+    long getMemoryBytes() {
+        SummedAreaTable table = brightnessTable;
+        long memoryBytes = (null == table) ? 0 : table.getMemoryBytes();
+        levelsLock.lock();
+        try {
+            for (Level level : levels.values()) {
+                memoryBytes += level.getMemoryBytes();
+            }
+        } finally {
+            levelsLock.unlock();
+        }
+        return memoryBytes;
+    }
+
+    /**
+     * Must be called while holding the levels lock.
+     * @param resolution The number of sub images in each row
+     * @return The level of the given resolution if it is already built, null otherwise
+     */
+    private Level getBuiltLevel(int resolution) {
+        Level level = levels.get(resolution);
+        return ((null != level) && level.isBuilt()) ? level : null;
+    }
+
+    /**
+     * Builds the given (new) level, deriving it from the level of double its resolution if it is built
+     * over the same padding, and calculating it otherwise. The threads waiting for the level are released
+     * once it is built. If the build fails, the level is removed, and the threads waiting for it are released
+     * to build it themselves. The growth listener (if any) is notified once the level is built.
+     * @param level The level to build
+     * @param finerLevel The built level of double the resolution, null if there is none
+     * @param paddedImage The image padded for the level's resolution
+     * @param resolution The number of sub images in each row of the level
+     * @param levelRowRunner Runs the calculation of the rows of the level
+     */
+    private void buildLevel(Level level, Level finerLevel, PaddedImage paddedImage, int resolution,
+                            RowRunner levelRowRunner) {
+        try {
+            level.allocate();
+            if ((null != finerLevel) && finerLevel.hasGeometry(paddedImage, level.subImageDimension / 2) &&
+                    (finerLevel.subImageDimension * 2 == level.subImageDimension) &&
+                    (finerLevel.subImageRows == level.subImageRows * 2)) {
+                deriveLevel(level, finerLevel, resolution, levelRowRunner);
+            } else {
+                calculateLevel(level, paddedImage, resolution, levelRowRunner);
+            }
+        } catch (RuntimeException | Error e) {
+            levelsLock.lock();
+            try {
+                levels.remove(resolution, level);
+            } finally {
+                levelsLock.unlock();
+            }
+            level.built.completeExceptionally(e);
+            throw e;
+        }
+        level.built.complete(null);
+
+        Runnable listener = growthListener;
+        if (null != listener) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Derives a level from the level of double its resolution, summing each 2x2 block of sub images.
+     * As the grayscale sums are exact, the result is identical to calculating the level from the image.
+     * @param level The level to derive
+     * @param finerLevel The level of double the resolution
+     * @param resolution The number of sub images in each row of the derived level
+     * @param levelRowRunner Runs the derivation of the rows of the level
+     */
+    private void deriveLevel(Level level, Level finerLevel, int resolution, RowRunner levelRowRunner) {
+        levelRowRunner.forEachRow(level.subImageRows, row -> {
+            long[] topRow = finerLevel.grayscaleSums[row * 2];
+            long[] bottomRow = finerLevel.grayscaleSums[row * 2 + 1];
+            for (int col = 0; col < resolution; col++) {
+                level.setGrayscaleSum(row, col, topRow[col * 2] + topRow[col * 2 + 1] +
+                        bottomRow[col * 2] + bottomRow[col * 2 + 1]);
+            }
+        });
+    }
+
+    /**
+     * Calculates a level from the summed-area table of the image, building the table if needed.
+     * Images which should not (or cannot) have a table are summed a row of sub images at a time instead.
+     * @param level The level to calculate
+     * @param paddedImage The image padded for the level's resolution
+     * @param resolution The number of sub images in each row of the level
+     * @param levelRowRunner Runs the calculation of the rows of the level
+     */
+    private void calculateLevel(Level level, PaddedImage paddedImage, int resolution,
+                                RowRunner levelRowRunner) {
+        int subImageRows = level.subImageRows;
+        // The table takes 8 bytes a pixel, defeating an image whose pixels are kept off the heap
+        if ((image instanceof MappedImage) || !SummedAreaTable.canHold(image)) {
+            levelRowRunner.forEachRow(subImageRows, row -> {
+                long[] grayscaleSums = new long[resolution];
+                paddedImage.getSubImageRowGrayscaleSums(row, resolution, grayscaleSums);
+                for (int col = 0; col < resolution; col++) {
+                    level.setGrayscaleSum(row, col, grayscaleSums[col]);
+                }
+            });
+            return;
+        }
+
+        SummedAreaTable table = getBrightnessTable();
+        int subImageDimension = level.subImageDimension;
+        levelRowRunner.forEachRow(subImageRows, row -> {
+            for (int col = 0; col < resolution; col++) {
+                level.setGrayscaleSum(row, col, paddedImage.getRegionGrayscaleSum(table,
+                        row * subImageDimension, col * subImageDimension,
+                        subImageDimension, subImageDimension));
+            }
+        });
+    }
+
+    /**
+     * The table is built once, by the first thread to need it, while the others needing it wait.
+     * @return The summed-area table of the image, built if needed
+     */
+    private SummedAreaTable getBrightnessTable() {
+        tableLock.lock();
+        try {
+            if (null == brightnessTable) {
+                brightnessTable = new SummedAreaTable(image);
+            }
+            return brightnessTable;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    /**
+     * A single level of the pyramid, holding both the exact grayscale sums of the sub images
+     * (for deriving coarser levels) and their brightness. The level is in the pyramid from the moment
+     * its build starts, and may only be read once it is built.
+     */
+    private static class Level {
+
+        private final int subImageDimension;
+        private final int rowPadding;
+        private final int colPadding;
+        private final int subImageRows;
+        private final int resolution;
+        // Allocated by the builder of the level, rather than while the level is added to the pyramid
+        private long[][] grayscaleSums = null;
+        private double[][] brightness = null;
+        // Completed once the level is built, or exceptionally if its build failed
+        private final CompletableFuture<Void> built = new CompletableFuture<>();
+
+        /**
+         * @param subImageDimension The dimension of each sub image in the level
+         * @param rowPadding The number of padding rows above the image
+         * @param colPadding The number of padding columns left of the image
+         * @param subImageRows The number of rows of sub images in the level
+         * @param resolution The number of sub images in each row of the level
+         */
+        Level(int subImageDimension, int rowPadding, int colPadding, int subImageRows, int resolution) {
+            this.subImageDimension = subImageDimension;
+            this.rowPadding = rowPadding;
+            this.colPadding = colPadding;
+            this.subImageRows = subImageRows;
+            this.resolution = resolution;
+        }
+
+        /**
+         * Allocates the sums and brightness values of the level, before it is built.
+         */
+        void allocate() {
+            grayscaleSums = new long[subImageRows][resolution];
+            brightness = new double[subImageRows][resolution];
+        }
+
+        /**
+         * @param paddedImage The padded image to compare to
+         * @param expectedSubImageDimension The expected dimension of each sub image
+         * @return True if the level's sub images are laid over the given padded image as expected
+         */
+        boolean hasGeometry(PaddedImage paddedImage, int expectedSubImageDimension) {
+            return (subImageDimension == expectedSubImageDimension) &&
+                    (rowPadding == paddedImage.getRowPadding()) &&
+                    (colPadding == paddedImage.getColPadding());
+        }
+
+        /**
+         * @return True if the level is built
+         */
+        boolean isBuilt() {
+            return built.isDone() && !built.isCompletedExceptionally();
+        }
+
+        /**
+         * Waits for the level to be built, by another thread.
+         * @return True if the level was built, false if its build failed
+         * @throws CancellationException If the thread was interrupted while waiting
+         */
+        boolean awaitBuilt() {
+            try {
+                built.get();
+                return true;
+            } catch (ExecutionException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+        }
+
+        /**
+         * @return The number of bytes the sums and brightness values occupy in memory
+         */
+        long getMemoryBytes() {
+            return (long) subImageRows * resolution * (Long.BYTES + Double.BYTES);
+        }
+
+        /**
+         * @param row The row of the sub image
+         * @param col The column of the sub image
+         * @param grayscaleSum The sum of the scaled grayscale values of the sub image
+         */
+        void setGrayscaleSum(int row, int col, long grayscaleSum) {
+            grayscaleSums[row][col] = grayscaleSum;
+            brightness[row][col] = SummedAreaTable.getBrightness(
+                    grayscaleSum, (long) subImageDimension * subImageDimension);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package ascii_art;
+
+import image.BaseImage;
+import image.ImageLoader;
+import image.MappedImage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A least-recently-used cache of decoded images, together with the brightness pyramids derived from them.
+ * Images (or raw pixel stores) are keyed by their path, and are decoded again when the modification time or the size
+ * of their file changes. Images may also be decoded from data, keyed by its digest.
+ * The cache is bounded by a memory budget in bytes, rather than by a number of images,
+ * as the memory of an image (and its pyramid) depends on its dimensions.
+ * The most recently used image is kept even if it alone exceeds the budget, as it is still in use.
+ * Images are decoded without holding the cache's lock, and each version of an image is decoded once:
+ * a thread asking for an image being decoded by another thread waits for that decoding rather than repeating it.
+ * The pyramids grow as they are used (even by requests served entirely from the cache), so the cache
+ * is notified whenever a pyramid of its images grows, and evicts images as needed then as well.
+ * Listeners may be notified of the images removed from the cache, to drop whatever they keep of them.
+ * @author Nimrod M.
+ */
+public class ImageCache {
+
+    /**
+     * The default memory budget of the cache, in bytes.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+    /**
+     * The system property setting the memory budget of the caches of the shell and the server, in bytes.
+     */
+    public static final String MEMORY_BUDGET_PROPERTY = "ascii_art.imageCacheBytes";
+
+    // Images decoded from data (rather than files) are keyed by the digest of the data
+    private static final String DATA_KEY_PREFIX = "data:";
+    private static final String DATA_DIGEST_ALGORITHM = "SHA-256";
+    // The data of an image is never modified, so it has a constant modification time
+    private static final long DATA_MODIFIED_TIME = 0;
+
+    private final long memoryBudget;
+    // Ordered by access, from the least recently used to the most recently used.
+    // Keyed by the absolute path of the image's file, or by the digest of the image's data.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // The same entries, by their image, for finding the pyramid of an image already decoded
+    private final Map<BaseImage, Entry> entriesByImage = new IdentityHashMap<>();
+    // The decodings in progress, by the key of the image and the version of its file
+    private final Map<String, CompletableFuture<BaseImage>> decodings = new HashMap<>();
+    // Notified of each image removed from the cache, after the cache's lock is released
+    private final List<Consumer<BaseImage>> removalListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs a new, empty, ImageCache.
+     * @param memoryBudget The maximal number of bytes the cached images and pyramids may occupy
+     */
+    public ImageCache(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Retrieves the image of the given file, decoding it only if it is not in the cache,
+     * or if the file was modified since it was decoded.
+     * @param filename The name of the file to be read the image from
+     * @return The decoded image
+     * @throws IOException If the file is not found, or is not a readable image
+     */
+    public BaseImage getImage(String filename) throws IOException {
+        Path path = Paths.get(filename).toAbsolutePath().normalize();
+        long modifiedTime = Files.getLastModifiedTime(path).toMillis();
+        long size = Files.size(path);
+
+        return getImage(path.toString(), modifiedTime, size, () -> ImageLoader.load(filename));
+    }
+
+    /**
+     * Retrieves the image encoded in the given data (such as the content of an uploaded image file),
+     * decoding it only if an image of the same data is not in the cache. Images are keyed by
+     * a digest of their data, so the same data always brings back the same image (and its pyramid).
+     * @param imageData The encoded image
+     * @return The decoded image
+     * @throws IOException If the data is not a readable image
+     */
+    public BaseImage getImage(byte[] imageData) throws IOException {
+        String key = DATA_KEY_PREFIX + HexFormat.of().formatHex(getDigest().digest(imageData));
+        return getImage(key, DATA_MODIFIED_TIME, imageData.length, () -> ImageLoader.load(imageData));
+    }
+
+    /**
+     * @param image An image
+     * @return True if the image is in the cache
+     */
+    synchronized boolean contains(BaseImage image) {
+        return entriesByImage.containsKey(image);
+    }
+
+    /**
+     * Adds a listener notified of each image removed from the cache (evicted, or replaced by a newer
+     * decoding of its file). The listener is called without holding the cache's lock.
+     * @param removalListener The listener, accepting the removed image
+     */
+    void addRemovalListener(Consumer<BaseImage> removalListener) {
+        removalListeners.add(removalListener);
+    }
+
+    /**
+     * @return The memory budget set by the MEMORY_BUDGET_PROPERTY system property,
+     *         or the default memory budget if the property is not set (or is not a number)
+     */
+    public static long getConfiguredMemoryBudget() {
+        return Long.getLong(MEMORY_BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Retrieves the brightness pyramid of the given image. If the image is in the cache,
+     * its pyramid is kept with it, so it is built (lazily) only once for as long as the image is cached.
+     * The cache is notified by the pyramid whenever it grows, to evict images if it exceeds its budget.
+     * @param image The image of the pyramid
+     * @param pyramidFactory Creates the pyramid, if the image has none yet
+     * @return The pyramid of the image
+     */
+    synchronized BrightnessPyramid getBrightnessPyramid(BaseImage image,
+                                                        Supplier<BrightnessPyramid> pyramidFactory) {
+        Entry entry = entriesByImage.get(image);
+        if (null == entry) {
+            return pyramidFactory.get();
+        }
+
+        if (null == entry.brightnessPyramid) {
+            entry.brightnessPyramid = pyramidFactory.get();
+            entry.brightnessPyramid.setGrowthListener(this::trim);
+        }
+        return entry.brightnessPyramid;
+    }
+
+    /**
+     * Evicts the least recently used images until the cache is within its memory budget, once a pyramid
+     * of its images grew. Called without holding any lock of the pyramid.
+     */
+    private void trim() {
+        List<BaseImage> removedImages = new ArrayList<>();
+        synchronized (this) {
+            evict(removedImages);
+        }
+        notifyRemoval(removedImages);
+    }
+
+    /**
+     * Retrieves a cached image, or decodes it - unless another thread is already decoding the same version
+     * of the image, in which case its decoding is waited for. A failed decoding is not cached.
+     * @param key The key of the image
+     * @param modifiedTime The current modification time of the image's file, in milliseconds
+     * @param size The current size of the image's file, in bytes
+     * @param decoder Decodes the image
+     * @return The image
+     * @throws IOException If the image could not be decoded
+     */
+    private BaseImage getImage(String key, long modifiedTime, long size, ImageDecoder decoder)
+            throws IOException {
+        String decodingKey = key + '@' + modifiedTime + ':' + size;
+        List<BaseImage> removedImages = new ArrayList<>();
+        CompletableFuture<BaseImage> decoding;
+        CompletableFuture<BaseImage> newDecoding = new CompletableFuture<>();
+        synchronized (this) {
+            BaseImage image = getCachedImage(key, modifiedTime, size, removedImages);
+            if (null != image) {
+                decoding = CompletableFuture.completedFuture(image);
+            } else {
+                decoding = decodings.putIfAbsent(decodingKey, newDecoding);
+            }
+        }
+        notifyRemoval(removedImages);
+        if (null != decoding) {
+            return awaitDecoding(decoding);
+        }
+
+        BaseImage image;
+        try {
+            image = decoder.decode();
+        } catch (IOException | RuntimeException | Error e) {
+            synchronized (this) {
+                decodings.remove(decodingKey, newDecoding);
+            }
+            newDecoding.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            image = putImage(key, image, modifiedTime, size, removedImages);
+            decodings.remove(decodingKey, newDecoding);
+        }
+        newDecoding.complete(image);
+        notifyRemoval(removedImages);
+        return image;
+    }
+
+    /**
+     * Retrieves a cached image, removing it if its file was modified since it was decoded.
+     * @param key The key of the image
+     * @param modifiedTime The current modification time of the image's file, in milliseconds
+     * @param size The current size of the image's file, in bytes
+     * @param removedImages The list to add the images removed from the cache to
+     * @return The cached image, or null if it is not in the cache (or was modified)
+     */
+    private synchronized BaseImage getCachedImage(String key, long modifiedTime, long size,
+                                                  List<BaseImage> removedImages) {
+        Entry entry = entries.get(key);
+        if (null == entry) {
+            return null;
+        }
+        if ((entry.modifiedTime != modifiedTime) || (entry.size != size)) {
+            removedImages.add(remove(key));
+            return null;
+        }
+        return entry.image;
+    }
+
+    /**
+     * Puts a decoded image in the cache, evicting other images if needed.
+     * If the same version of the image is already cached, the cached image is kept and returned instead.
+     * @param key The key of the image
+     * @param image The decoded image
+     * @param modifiedTime The modification time of the image's file when decoded, in milliseconds
+     * @param size The size of the image's file when decoded, in bytes
+     * @param removedImages The list to add the images removed from the cache to
+     * @return The cached image
+     */
+    private synchronized BaseImage putImage(String key, BaseImage image, long modifiedTime, long size,
+                                            List<BaseImage> removedImages) {
+        Entry entry = entries.get(key);
+        if ((null == entry) || (entry.modifiedTime != modifiedTime) || (entry.size != size)) {
+            if (null != entry) {
+                removedImages.add(remove(key));
+            }
+            entry = new Entry(image, modifiedTime, size);
+            entries.put(key, entry);
+            entriesByImage.put(entry.image, entry);
+        }
+
+        evict(removedImages);
+        return entry.image;
+    }
+
+    /**
+     * @return The number of bytes the cached images and pyramids currently occupy (approximately)
+     */
+    public synchronized long getMemoryBytes() {
+        long memoryBytes = 0;
+        for (Entry entry : entries.values()) {
+            memoryBytes += entry.getMemoryBytes();
+        }
+        return memoryBytes;
+    }
+
+    /**
+     * Evicts the least recently used images until the cache is within its memory budget,
+     * never evicting the most recently used image. The pyramids grow as they are used,
+     * hence the memory is recalculated on every eviction rather than tracked.
+     * Must be called while holding the cache's lock.
+     * @param removedImages The list to add the evicted images to
+     */
+    private void evict(List<BaseImage> removedImages) {
+        long memoryBytes = getMemoryBytes();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while ((memoryBytes > memoryBudget) && (entries.size() > 1)) {
+            Entry evicted = iterator.next().getValue();
+            iterator.remove();
+            entriesByImage.remove(evicted.image);
+            removedImages.add(evicted.image);
+            memoryBytes -= evicted.getMemoryBytes();
+        }
+    }
+
+    /**
+     * @param key The key of the image to remove from the cache
+     * @return The removed image
+     */
+    private BaseImage remove(String key) {
+        Entry removed = entries.remove(key);
+        entriesByImage.remove(removed.image);
+        return removed.image;
+    }
+
+    /**
+     * Notifies the removal listeners of the given removed images. Called without holding the cache's lock,
+     * so listeners may take locks of their own (which may be held while calling the cache).
+     * @param removedImages The images removed from the cache
+     */
+    private void notifyRemoval(List<BaseImage> removedImages) {
+        for (BaseImage removedImage : removedImages) {
+            for (Consumer<BaseImage> removalListener : removalListeners) {
+                removalListener.accept(removedImage);
+            }
+        }
+    }
+
+    /**
+     * Waits for the decoding of an image by another thread.
+     * @param decoding The decoding
+     * @return The decoded image
+     * @throws IOException If the decoding failed, or the thread was interrupted while waiting
+     */
+    private static BaseImage awaitDecoding(CompletableFuture<BaseImage> decoding) throws IOException {
+        try {
+            return decoding.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * @return A new digest of the data of images
+     */
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance(DATA_DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support the algorithm
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodes an image.
+     */
+    private interface ImageDecoder {
+        /**
+         * @return The decoded image
+         * @throws IOException If the image could not be decoded
+         */
+        BaseImage decode() throws IOException;
+    }
+
+    /**
+     * A cached image, with the state of its file when decoded and its pyramid (once created).
+     */
+    private static class Entry {
+
+        private final BaseImage image;
+        private final long modifiedTime;
+        private final long size;
+        private BrightnessPyramid brightnessPyramid = null;
+
+        /**
+         * @param image The decoded image
+         * @param modifiedTime The modification time of the image's file, in milliseconds
+         * @param size The size of the image's file, in bytes
+         */
+        Entry(BaseImage image, long modifiedTime, long size) {
+            this.image = image;
+            this.modifiedTime = modifiedTime;
+            this.size = size;
+        }
+
+        /**
+         * @return The number of bytes the image and its pyramid occupy in memory (approximately)
+         */
+        long getMemoryBytes() {
+            // The pixels of a mapped image are off the heap, paged in and out by the operating system
+            long memoryBytes = (image instanceof MappedImage) ? 0 :
+                    (long) image.getWidth() * image.getHeight() * Integer.BYTES;
+            if (null != brightnessPyramid) {
+                memoryBytes += brightnessPyramid.getMemoryBytes();
+            }
+            return memoryBytes;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ascii_art;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of the most recent requests, for reporting their percentiles.
+ * The latencies are kept in a ring of a fixed size, so recording never allocates,
+ * and the percentiles reflect the recent load rather than the whole lifetime of the server.
+ * @author Nimrod M.
+ */
+class LatencyRecorder {
+
+    private final long[] latencies;
+    private int nextIndex = 0;
+    private long recorded = 0;
+
+    /**
+     * Constructs a new, empty, LatencyRecorder.
+     * @param capacity The number of most recent latencies kept
+     */
+    LatencyRecorder(int capacity) {
+        latencies = new long[capacity];
+    }
+
+    /**
+     * @param nanos The latency of a request, in nanoseconds
+     */
+    synchronized void record(long nanos) {
+        latencies[nextIndex] = nanos;
+        nextIndex = (nextIndex + 1) % latencies.length;
+        recorded++;
+    }
+
+    /**
+     * @return The number of latencies recorded so far, including those no longer kept
+     */
+    synchronized long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Calculates the given percentiles of the latencies kept, by the nearest rank.
+     * @param percentiles The percentiles to calculate, each between 0 (exclusive) and 100 (inclusive)
+     * @return The latency of each percentile in nanoseconds, all 0 if no latency was recorded
+     */
+    long[] getPercentiles(double... percentiles) {
+        long[] sortedLatencies;
+        synchronized (this) {
+            sortedLatencies = Arrays.copyOf(latencies, (int) Math.min(recorded, latencies.length));
+        }
+        Arrays.sort(sortedLatencies);
+
+        long[] values = new long[percentiles.length];
+        if (0 == sortedLatencies.length) {
+            return values;
+        }
+        for (int i = 0; i < percentiles.length; i++) {
+            int rank = (int) Math.ceil(percentiles[i] / 100 * sortedLatencies.length);
+            values[i] = sortedLatencies[Math.max(0, rank - 1)];
+        }
+        return values;
+    }
+}
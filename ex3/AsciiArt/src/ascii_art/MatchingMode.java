@@ -0,0 +1,18 @@
+package ascii_art;
+
+/**
+ * An enum representing the different ways the sub images may be matched to characters.
+ * @author Nimrod M.
+ */
+public enum MatchingMode {
+    /**
+     * Matching each sub image to the character of the closest brightness.
+     */
+    BRIGHTNESS,
+
+    /**
+     * Matching each sub image of sufficient contrast to the character of the closest shape
+     * (among the characters of similar brightness), and the rest by their brightness.
+     */
+    SHAPE
+}
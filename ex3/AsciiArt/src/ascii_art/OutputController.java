@@ -2,6 +2,10 @@ package ascii_art;
 
 import ascii_output.ConsoleAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
+import instrumentation.Stage;
+import instrumentation.StageStatistics;
+
+import java.io.PrintStream;
 
 /**
  * Controls the output of the ASCII art, to either the console or an HTML file.
@@ -12,19 +16,23 @@ public class OutputController {
     private static final String DEFAULT_HTML_FONT = "Courier New";
 
     private final HtmlAsciiOutput htmlAsciiOutput;
+    private final HtmlAsciiOutput compressedHtmlAsciiOutput;
     private final ConsoleAsciiOutput consoleAsciiOutput;
     private OutputMethod outputMethod;
 
     /**
      * Constructs a new OutputController with the given default output method and HTML output file path.
      * @param defaultOutputMethod The default output method
-     * @param htmlOutPath The path of the HTML output file, for when the output method is HTML (mandatory)
+     * @param htmlOutPath The path of the HTML output file, for when the output method is HTML (mandatory).
+     *                    When the output method is compressed HTML, the gzip extension is appended to it.
      */
     public OutputController(OutputMethod defaultOutputMethod, String htmlOutPath) {
         this.outputMethod = defaultOutputMethod;
         // Taking advantage of the fact that the Ctor of HtmlAsciiOutput does not write the actual file,
         // so we can construct it without the file existing before actually writing to it.
-        htmlAsciiOutput = new HtmlAsciiOutput(htmlOutPath, DEFAULT_HTML_FONT);
+        htmlAsciiOutput = new HtmlAsciiOutput(htmlOutPath, DEFAULT_HTML_FONT, false);
+        compressedHtmlAsciiOutput = new HtmlAsciiOutput(
+                htmlOutPath + HtmlAsciiOutput.GZIP_EXTENSION, DEFAULT_HTML_FONT, true);
         consoleAsciiOutput = new ConsoleAsciiOutput();
     }
 
@@ -36,18 +44,52 @@ public class OutputController {
         this.outputMethod = outputMethod;
     }
 
+    /**
+     * @return The output method currently selected
+     */
+    public OutputMethod getOutputMethod() {
+        return outputMethod;
+    }
+
     /**
      * Outputs the given ASCII art to the selected output method.
      * @param asciiArt The ASCII art to be output
      */
     public void toOutput(char[][] asciiArt) {
-        switch (outputMethod) {
-            case CONSOLE:
-                consoleAsciiOutput.out(asciiArt);
-                break;
-            case HTML:
-                htmlAsciiOutput.out(asciiArt);
-                break;
-        }
+        toOutput(asciiArt, outputMethod, System.out);
+    }
+
+    /**
+     * Outputs the given ASCII art to the selected output method,
+     * writing console output to the given stream rather than to the standard output.
+     * @param asciiArt The ASCII art to be output
+     * @param consoleStream The stream console output is written to
+     */
+    public void toOutput(char[][] asciiArt, PrintStream consoleStream) {
+        toOutput(asciiArt, outputMethod, consoleStream);
+    }
+
+    /**
+     * Outputs the given ASCII art to the given output method, regardless of the selected one.
+     * The output is recorded in the global stage statistics.
+     * @param asciiArt The ASCII art to be output
+     * @param outputMethod The output method to be used
+     * @param consoleStream The stream console output is written to
+     */
+    public void toOutput(char[][] asciiArt, OutputMethod outputMethod, PrintStream consoleStream) {
+        StageStatistics.getGlobal().time(Stage.OUTPUT, () -> {
+            switch (outputMethod) {
+                case CONSOLE:
+                    consoleAsciiOutput.out(asciiArt, consoleStream);
+                    break;
+                case HTML:
+                    htmlAsciiOutput.out(asciiArt);
+                    break;
+                case COMPRESSED_HTML:
+                    compressedHtmlAsciiOutput.out(asciiArt);
+                    break;
+            }
+            return null;
+        });
     }
 }
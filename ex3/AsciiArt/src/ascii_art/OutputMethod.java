@@ -13,5 +13,10 @@ public enum OutputMethod {
     /**
      * The output method of the ASCII Art is HTML.
      */
-    HTML
+    HTML,
+
+    /**
+     * The output method of the ASCII Art is gzip compressed HTML.
+     */
+    COMPRESSED_HTML
 }
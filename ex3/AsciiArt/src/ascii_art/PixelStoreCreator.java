@@ -0,0 +1,46 @@
+package ascii_art;
+
+import image.MappedImage;
+
+import java.io.IOException;
+
+/**
+ * Creates raw pixel stores of images, so later shells and batch conversions open them
+ * (by the store's path) without decoding them, and without holding their pixels on the heap.
+ * @author Nimrod M.
+ */
+public class PixelStoreCreator {
+
+    private static final String USAGE_MESSAGE = "Usage: PixelStoreCreator <image>...";
+    private static final String CREATED_MESSAGE = "Created \"%s\" (%dx%d).%n";
+    private static final String IMAGE_ERROR_MESSAGE = "Did not create a store of \"%s\": %s%n";
+
+    /**
+     * Constructs a new PixelStoreCreator object.
+     * Per this implementation, the constructor is not used
+     * and no object of this class differs from another.
+     */
+    public PixelStoreCreator() {}
+
+    /**
+     * Creates a raw pixel store next to each of the given images, named after the image
+     * with the store extension appended.
+     * @param args The paths of the images
+     */
+    public static void main(String[] args) {
+        if (0 == args.length) {
+            System.out.println(USAGE_MESSAGE);
+            return;
+        }
+
+        for (String imageFilename : args) {
+            String storeFilename = imageFilename + MappedImage.STORE_EXTENSION;
+            try {
+                MappedImage image = MappedImage.create(imageFilename, storeFilename);
+                System.out.printf(CREATED_MESSAGE, storeFilename, image.getWidth(), image.getHeight());
+            } catch (IOException e) {
+                System.out.printf(IMAGE_ERROR_MESSAGE, imageFilename, e.getMessage());
+            }
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package ascii_art;
 
 import exceptions.ShellCommandException;
-import image.Image;
+import image.BaseImage;
+import shell_commands.DeferrableShellCommand;
 import shell_commands.ShellCommand;
 import shell_commands.ShellCommandFactory;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Shell interface for the ASCII Art program. The shell is a command line interface
@@ -25,16 +38,26 @@ public class Shell {
     private static final int DEFAULT_RESOLUTION = 128;
     private static final String DEFAULT_OUTPUT_PATH = "out.html";
     private static final OutputMethod DEFAULT_OUTPUT_METHOD = OutputMethod.CONSOLE;
+    private static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final String STDIN_SCRIPT = "-";
+    private static final String PARALLEL_FLAG = "--parallel";
+    private static final String USAGE_MESSAGE = "Usage: Shell [<script file> | - [--parallel]]";
+    private static final String SCRIPT_LOAD_ERROR_MESSAGE = "Error reading script: %s%n";
+    // The maximal number of commands whose output is pending, bounding the memory of the results
+    private static final int MAX_PENDING_COMMANDS = DEFAULT_PARALLELISM * 4;
 
     private final HashMap<String, ShellCommand> commands;
 
     /**
      * Constructs a new Shell object with the default values for the ASCII Art program.
+     * The memory budget of the image cache is set by the ImageCache.MEMORY_BUDGET_PROPERTY system property.
      */
     public Shell() {
-        Image defaultImage = null;
+        // The default image is cached as well, so switching back to it is instant
+        ImageCache imageCache = new ImageCache(ImageCache.getConfiguredMemoryBudget());
+        BaseImage defaultImage = null;
         try {
-            defaultImage = new Image(DEFAULT_IMAGE_PATH);
+            defaultImage = imageCache.getImage(DEFAULT_IMAGE_PATH);
         } catch (IOException e) {
             System.out.println(DEFAULT_IMAGE_LOAD_ERROR_MESSAGE);
         }
@@ -42,9 +65,10 @@ public class Shell {
         // Starting the algorithm with default values
         AsciiArtAlgorithm asciiArtAlgorithm = new AsciiArtAlgorithm(
                 defaultImage, DEFAULT_RESOLUTION, DEFAULT_CHARSET);
+        asciiArtAlgorithm.setParallelism(DEFAULT_PARALLELISM);
         OutputController outputController = new OutputController(
                 DEFAULT_OUTPUT_METHOD, DEFAULT_OUTPUT_PATH);
-        commands = ShellCommandFactory.createCommands(asciiArtAlgorithm, outputController);
+        commands = ShellCommandFactory.createCommands(asciiArtAlgorithm, outputController, imageCache);
     }
 
     /**
@@ -58,31 +82,151 @@ public class Shell {
         do {
             System.out.print(COMMAND_PROMPT_PREFIX);
             userInput = KeyboardInput.readLine();
-            String[] commandTokens = userInput.split(" ");
+            executeLine(userInput, System.out);
+        } while (!userInput.equals(EXIT_COMMAND));
+    }
+
+    /**
+     * Runs the commands of a script, one per line, without prompting.
+     * The script ends at its end, or at the exit command.
+     * In parallel mode, the asciiArt commands run concurrently (each with the state of the program
+     * at its line in the script), while the output of all the commands is still emitted
+     * in the order of the script. The brightness of the image is calculated once,
+     * and shared by all the asciiArt commands of the same image.
+     * @param script The reader of the script
+     * @param parallel True if the asciiArt commands should run in parallel, false otherwise
+     * @throws IOException If reading the script failed
+     */
+    public void runScript(BufferedReader script, boolean parallel) throws IOException {
+        if (!parallel) {
+            String line;
+            while ((null != (line = script.readLine())) && !line.trim().equals(EXIT_COMMAND)) {
+                executeLine(line.trim(), System.out);
+            }
+            return;
+        }
 
-            ShellCommand command = commands.get(commandTokens[0]);
-            if (command == null) {
-                System.out.println(INVALID_COMMAND_MESSAGE);
-                continue;
+        // The output of each command, in the order of the script, whether or not it is ready
+        Deque<Future<Runnable>> pendingOutputs = new ArrayDeque<>();
+        ExecutorService executor = Executors.newFixedThreadPool(DEFAULT_PARALLELISM);
+        try {
+            String line;
+            while ((null != (line = script.readLine())) && !line.trim().equals(EXIT_COMMAND)) {
+                if (pendingOutputs.size() >= MAX_PENDING_COMMANDS) {
+                    emitOutput(pendingOutputs.removeFirst());
+                }
+                pendingOutputs.addLast(submitLine(line.trim(), executor, pendingOutputs.isEmpty()));
+                // Emitting whatever is already ready, without waiting
+                while (!pendingOutputs.isEmpty() && pendingOutputs.peekFirst().isDone()) {
+                    emitOutput(pendingOutputs.removeFirst());
+                }
             }
+            while (!pendingOutputs.isEmpty()) {
+                emitOutput(pendingOutputs.removeFirst());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Executes a single command line, printing its errors (if any).
+     * @param line The command line, the command followed by its arguments
+     * @param output The stream the command and its errors print to
+     */
+    private void executeLine(String line, PrintStream output) {
+        String[] commandTokens = line.split(" ");
+
+        ShellCommand command = commands.get(commandTokens[0]);
+        if (command == null) {
+            output.println(INVALID_COMMAND_MESSAGE);
+            return;
+        }
+
+        String[] commandArgs = Arrays.copyOfRange(commandTokens, 1, commandTokens.length);
+        try {
+             command.execute(commandArgs, output);
+        } catch (ShellCommandException e) {
+             output.println(e.getMessage());
+        }
+    }
 
+    /**
+     * Submits a single command line of a parallel script. Deferrable commands are submitted to the executor,
+     * while the rest are executed immediately, as the following commands depend on their effect.
+     * @param line The command line, the command followed by its arguments
+     * @param executor The executor of the deferrable commands
+     * @param nothingPending True if the output of all the previous commands was already emitted
+     * @return The output of the command line
+     */
+    private Future<Runnable> submitLine(String line, ExecutorService executor, boolean nothingPending) {
+        String[] commandTokens = line.split(" ");
+        ShellCommand command = commands.get(commandTokens[0]);
+        if (command instanceof DeferrableShellCommand) {
             String[] commandArgs = Arrays.copyOfRange(commandTokens, 1, commandTokens.length);
             try {
-                 command.execute(commandArgs);
+                return executor.submit(((DeferrableShellCommand) command).defer(commandArgs, System.out));
             } catch (ShellCommandException e) {
-                 System.out.println(e.getMessage());
+                return CompletableFuture.completedFuture(() -> System.out.println(e.getMessage()));
             }
+        }
 
-        } while (!userInput.equals(EXIT_COMMAND));
+        // Nothing is waiting to be emitted before this command, so it may print directly
+        if (nothingPending) {
+            executeLine(line, System.out);
+            return CompletableFuture.completedFuture(() -> { });
+        }
+
+        // Otherwise, whatever the command prints is held back until the previous outputs are emitted
+        ByteArrayOutputStream capturedOutput = new ByteArrayOutputStream();
+        executeLine(line, new PrintStream(capturedOutput, true, System.out.charset()));
+        return CompletableFuture.completedFuture(() -> {
+            System.out.write(capturedOutput.toByteArray(), 0, capturedOutput.size());
+            System.out.flush();
+        });
     }
 
     /**
-     * The main method of the program, runs the shell.
-     * No command line arguments are expected.
-     * @param args The command line arguments
+     * Emits the output of a command of a parallel script, waiting for the command to finish if needed.
+     * @param pendingOutput The output of the command
+     */
+    private static void emitOutput(Future<Runnable> pendingOutput) {
+        try {
+            pendingOutput.get().run();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The main method of the program. Without command line arguments, runs the interactive shell.
+     * Otherwise, runs the commands of a script file (or of the standard input, given "-"),
+     * optionally running the asciiArt commands in parallel.
+     * @param args The command line arguments - none, or the script followed by an optional --parallel flag
      */
     public static void main(String[] args) {
-        Shell shell = new Shell();
-        shell.run();
+        if (0 == args.length) {
+            Shell shell = new Shell();
+            shell.run();
+            return;
+        }
+
+        if ((args.length > 2) || ((2 == args.length) && !args[1].equals(PARALLEL_FLAG))) {
+            System.out.println(USAGE_MESSAGE);
+            return;
+        }
+
+        boolean parallel = (2 == args.length);
+        try (BufferedReader script = args[0].equals(STDIN_SCRIPT) ?
+                new BufferedReader(new InputStreamReader(System.in)) :
+                new BufferedReader(new FileReader(args[0]))) {
+            Shell shell = new Shell();
+            shell.runScript(script, parallel);
+        } catch (IOException e) {
+            System.out.printf(SCRIPT_LOAD_ERROR_MESSAGE, e.getMessage());
+        }
     }
 }
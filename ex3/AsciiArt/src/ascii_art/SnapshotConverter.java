@@ -0,0 +1,134 @@
+package ascii_art;
+
+import image.BaseImage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Converts configuration snapshots to ASCII art, for any number of threads at once.
+ * Each snapshot is converted at most once for as long as its result is cached: a thread asking for
+ * a snapshot which is being converted by another thread waits for that conversion rather than repeating it.
+ * The results are kept in a least-recently-used cache, bounded by a number of results, and only for images
+ * of the image cache: the results of an image are removed with it, so they never keep it in memory
+ * beyond the image cache's budget. Images outside the image cache are converted anew every time.
+ * The brightness pyramids of images of the image cache are shared by all the conversions of the images.
+ * @author Nimrod M.
+ */
+public class SnapshotConverter {
+
+    /**
+     * The default maximal number of results kept in the cache.
+     */
+    public static final int DEFAULT_MAX_CACHED_RESULTS = 64;
+
+    private final ImageCache imageCache;
+    private final int maxCachedResults;
+    // Ordered by access, from the least recently used to the most recently used. Completed once the snapshot
+    // is converted, so the result of a conversion in progress can be waited for.
+    private final LinkedHashMap<AsciiArtSnapshot, CompletableFuture<char[][]>> results =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Constructs a new SnapshotConverter.
+     * @param imageCache The cache of the images, whose brightness pyramids are shared by the conversions
+     * @param maxCachedResults The maximal number of results kept in the cache
+     */
+    public SnapshotConverter(ImageCache imageCache, int maxCachedResults) {
+        this.imageCache = imageCache;
+        this.maxCachedResults = maxCachedResults;
+        imageCache.addRemovalListener(this::removeResults);
+    }
+
+    /**
+     * Converts the given snapshot to ASCII art, or retrieves its cached result.
+     * The result may be shared by other callers, hence should not be modified.
+     * @param snapshot The configuration of the conversion
+     * @return The ASCII art representation of the snapshot's image
+     */
+    public char[][] convert(AsciiArtSnapshot snapshot) {
+        BaseImage image = snapshot.getImage();
+        // A result of an image outside the image cache would keep the image in memory
+        if (!imageCache.contains(image)) {
+            return new AsciiArtAlgorithm(snapshot, new BrightnessPyramid(image)).run();
+        }
+
+        CompletableFuture<char[][]> newResult = new CompletableFuture<>();
+        CompletableFuture<char[][]> result = getOrPutResult(snapshot, newResult);
+        if (newResult != result) {
+            // Another thread converts (or converted) the same snapshot
+            return result.join();
+        }
+
+        try {
+            BrightnessPyramid brightnessPyramid = imageCache.getBrightnessPyramid(
+                    image, () -> new BrightnessPyramid(image));
+            newResult.complete(new AsciiArtAlgorithm(snapshot, brightnessPyramid).run());
+        } catch (RuntimeException e) {
+            // A failed conversion is not cached, the threads waiting for it fail as well
+            removeResult(snapshot, newResult);
+            newResult.completeExceptionally(e);
+            throw e;
+        }
+        // The image may have been removed from the image cache before its result was added
+        if (!imageCache.contains(image)) {
+            removeResults(image);
+        }
+        return newResult.join();
+    }
+
+    /**
+     * @return The number of results currently in the cache, including conversions in progress
+     */
+    public synchronized int getCachedResults() {
+        return results.size();
+    }
+
+    /**
+     * Retrieves the result of the given snapshot, marking it as the most recently used,
+     * or puts the given new result if there is none (evicting other results if needed).
+     * @param snapshot The configuration of the conversion
+     * @param newResult The result to put if the snapshot has none
+     * @return The result of the snapshot, the new result if it was put
+     */
+    private synchronized CompletableFuture<char[][]> getOrPutResult(AsciiArtSnapshot snapshot,
+                                                                   CompletableFuture<char[][]> newResult) {
+        CompletableFuture<char[][]> result = results.get(snapshot);
+        if (null != result) {
+            return result;
+        }
+        results.put(snapshot, newResult);
+        evict();
+        return newResult;
+    }
+
+    /**
+     * Evicts the least recently used results until the cache is within its maximal size.
+     * Conversions in progress are never evicted, as other threads may be about to wait for them.
+     */
+    private void evict() {
+        Iterator<CompletableFuture<char[][]>> iterator = results.values().iterator();
+        while ((results.size() > maxCachedResults) && iterator.hasNext()) {
+            if (iterator.next().isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @param snapshot The configuration of the conversion
+     * @param result The result to remove, if it is still the result of the snapshot
+     */
+    private synchronized void removeResult(AsciiArtSnapshot snapshot, CompletableFuture<char[][]> result) {
+        results.remove(snapshot, result);
+    }
+
+    /**
+     * Removes the results of the given image, once it is removed from the image cache.
+     * @param image The removed image
+     */
+    private synchronized void removeResults(BaseImage image) {
+        results.keySet().removeIf(snapshot -> image == snapshot.getImage());
+    }
+}
@@ -0,0 +1,136 @@
+package ascii_art;
+
+import image.PaddingMode;
+import image.TiledImageReader;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.IOException;
+
+/**
+ * Non-interactive conversion of a single image to ASCII art, for images too large to be decoded at once.
+ * The image is decoded band by band (see TiledImageReader), so only the brightness grid
+ * and a single band of the image are held in memory. The ASCII art is identical to the one
+ * the shell produces for the same image, resolution, padding and charset - resolutions the shell
+ * cannot reach (those not dividing the padded image, which would crop it) are rejected.
+ * @author Nimrod M.
+ */
+public class TiledConverter {
+
+    private static final String USAGE_MESSAGE =
+            "Usage: TiledConverter <image> <resolution> <charset> <console|html|html.gz> [pow2|aligned] "
+                    + "[accuracy tolerance]";
+    private static final String INVALID_RESOLUTION_MESSAGE =
+            "Resolution must be a positive number, no larger than the image's width.";
+    private static final String RESOLUTION_DIVISION_MESSAGE =
+            "Resolution must be a power of 2 with pow2 padding (or use aligned padding).";
+    private static final String INVALID_TOLERANCE_MESSAGE = "Accuracy tolerance must be a non-negative number.";
+    private static final String SAMPLING_REPORT_MESSAGE =
+            "Decoded 1 of every %d pixels in each axis, brightness error: max %.4f, mean %.4f.%n";
+    private static final String INVALID_OUTPUT_MESSAGE = "Output method must be console, html or html.gz.";
+    private static final String INVALID_PADDING_MESSAGE = "Padding must be pow2 or aligned.";
+    private static final String IMAGE_ERROR_MESSAGE = "Did not convert \"%s\" due to problem with image file.%n";
+    private static final String HTML_EXTENSION = ".html";
+
+    private final SubImgCharMatcher charMatcher;
+    private final PaddingMode paddingMode;
+
+    /**
+     * Constructs a new TiledConverter.
+     * @param charset The characters to be used in the ascii art
+     * @param paddingMode The way the images are padded before dividing them to sub images
+     */
+    public TiledConverter(char[] charset, PaddingMode paddingMode) {
+        this.charMatcher = new SubImgCharMatcher(charset);
+        this.paddingMode = paddingMode;
+    }
+
+    /**
+     * Converts the image read by the given reader to ASCII art.
+     * @param reader The reader of the image
+     * @param resolution The number of sub images in each row
+     * @return The ASCII art representation of the image
+     * @throws IOException If decoding the image failed
+     */
+    public char[][] convert(TiledImageReader reader, int resolution) throws IOException {
+        double[][] brightnessGrid = reader.readBrightnessGrid(resolution, paddingMode);
+        char[][] asciiArt = new char[brightnessGrid.length][resolution];
+        for (int row = 0; row < brightnessGrid.length; row++) {
+            for (int col = 0; col < resolution; col++) {
+                asciiArt[row][col] = charMatcher.getCharByImageBrightness(brightnessGrid[row][col]);
+            }
+        }
+        return asciiArt;
+    }
+
+    /**
+     * Runs a tiled conversion of a single image. An HTML output is written next to the image.
+     * With an accuracy tolerance, large sub images are subsampled and the sampling error is reported.
+     * @param args The path of the image, the resolution, the charset (all the characters,
+     *             as a single argument), the output method, and optionally the padding mode (pow2 by default)
+     *             and the accuracy tolerance, in this order
+     */
+    public static void main(String[] args) {
+        if ((args.length < 4) || (args.length > 6)) {
+            System.out.println(USAGE_MESSAGE);
+            return;
+        }
+
+        int resolution;
+        try {
+            resolution = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            resolution = 0;
+        }
+        OutputMethod outputMethod = BatchConverter.parseOutputMethod(args[3]);
+        if (null == outputMethod) {
+            System.out.println(INVALID_OUTPUT_MESSAGE);
+            return;
+        }
+
+        // The padding mode is told from the tolerance by its token, as either may be given alone
+        int toleranceIndex = 4;
+        PaddingMode paddingMode = PaddingMode.POWER_OF_TWO;
+        if ((args.length > 4) && (null != BatchConverter.parsePaddingMode(args[4]))) {
+            paddingMode = BatchConverter.parsePaddingMode(args[4]);
+            toleranceIndex++;
+        } else if (6 == args.length) {
+            System.out.println(INVALID_PADDING_MESSAGE);
+            return;
+        }
+
+        double tolerance = TiledImageReader.EXACT_TOLERANCE;
+        if (args.length > toleranceIndex) {
+            try {
+                tolerance = Double.parseDouble(args[toleranceIndex]);
+            } catch (NumberFormatException e) {
+                tolerance = -1;
+            }
+            if (!(tolerance >= TiledImageReader.EXACT_TOLERANCE)) {
+                System.out.println(INVALID_TOLERANCE_MESSAGE);
+                return;
+            }
+        }
+
+        TiledConverter tiledConverter = new TiledConverter(args[2].toCharArray(), paddingMode);
+        try (TiledImageReader reader = new TiledImageReader(args[0])) {
+            if ((resolution <= 0) || (resolution > reader.getWidth())) {
+                System.out.println(INVALID_RESOLUTION_MESSAGE);
+                return;
+            }
+            // Otherwise, the sub images would crop the right and bottom edges of the image, unlike the shell
+            if (!reader.isEvenlyDivided(resolution, paddingMode)) {
+                System.out.println(RESOLUTION_DIVISION_MESSAGE);
+                return;
+            }
+            reader.setAccuracyTolerance(tolerance);
+            char[][] asciiArt = tiledConverter.convert(reader, resolution);
+            new OutputController(outputMethod, args[0] + HTML_EXTENSION).toOutput(asciiArt);
+            if (TiledImageReader.EXACT_TOLERANCE != tolerance) {
+                System.out.printf(SAMPLING_REPORT_MESSAGE, reader.getSubsampling(),
+                        reader.getMaxSamplingError(), reader.getMeanSamplingError());
+            }
+        } catch (IOException e) {
+            System.out.printf(IMAGE_ERROR_MESSAGE, args[0]);
+        }
+    }
+}
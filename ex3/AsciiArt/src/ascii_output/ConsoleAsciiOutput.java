@@ -1,16 +1,88 @@
 package ascii_output;
 
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
 /**
  * Output a 2D array of chars to the console.
+ * The whole array is assembled in a single buffer, and written to the standard output at once
+ * (or to another stream, given to the constructor).
  * @author Dan Nirel
  */public class ConsoleAsciiOutput implements AsciiOutput{
+    private static final char SEPARATOR = ' ';
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+    // The stream to write to, or null to write to the standard output (as redirected at the time of writing)
+    private final PrintStream printStream;
+    private CharsetEncoder encoder;
+    // The buffers are reused between outputs, and only grow when a larger array is output
+    private CharBuffer frameBuffer = CharBuffer.allocate(0);
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(0);
+
+    /**
+     * Constructs a new ConsoleAsciiOutput, writing to the standard output.
+     */
+    public ConsoleAsciiOutput() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new ConsoleAsciiOutput.
+     * @param printStream The stream to write to, or null to write to the standard output
+     */
+    public ConsoleAsciiOutput(PrintStream printStream) {
+        this.printStream = printStream;
+    }
+
     @Override
     public void out(char[][] chars) {
+        out(chars, (null == printStream) ? System.out : printStream);
+    }
+
+    /**
+     * Writes the given chars to the given stream, rather than to the stream of this output.
+     * @param chars The chars to write
+     * @param stream The stream to write to
+     */
+    public void out(char[][] chars, PrintStream stream) {
+        if ((null == encoder) || !encoder.charset().equals(stream.charset())) {
+            encoder = stream.charset().newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            writeBuffer = ByteBuffer.allocate(
+                    (int) Math.ceil(frameBuffer.capacity() * encoder.maxBytesPerChar()));
+        }
+
+        int frameLength = 0;
+        for (char[] row : chars) {
+            frameLength += row.length * 2 + LINE_SEPARATOR.length;
+        }
+        if (frameBuffer.capacity() < frameLength) {
+            frameBuffer = CharBuffer.allocate(frameLength);
+            writeBuffer = ByteBuffer.allocate((int) Math.ceil(frameLength * encoder.maxBytesPerChar()));
+        }
+
+        frameBuffer.clear();
         for (int y = 0; y < chars.length ; y++) {
             for (int x = 0; x < chars[y].length; x++) {
-                System.out.print(chars[y][x] + " ");
+                frameBuffer.put(chars[y][x]);
+                frameBuffer.put(SEPARATOR);
             }
-            System.out.println();
+            frameBuffer.put(LINE_SEPARATOR);
         }
+        frameBuffer.flip();
+
+        writeBuffer.clear();
+        encoder.reset();
+        encoder.encode(frameBuffer, writeBuffer, true);
+        encoder.flush(writeBuffer);
+        writeBuffer.flip();
+
+        // Written at once through the stream, so it keeps its order with anything else printed to it
+        stream.write(writeBuffer.array(), writeBuffer.position(), writeBuffer.remaining());
+        stream.flush();
     }
 }
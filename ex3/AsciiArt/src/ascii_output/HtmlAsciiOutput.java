@@ -1,63 +1,195 @@
 package ascii_output;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Output a 2D array of chars to an HTML file viewable in a web browser.
+ * The file may optionally be gzip compressed.
  * @author Dan Nirel
  */
 public class HtmlAsciiOutput implements AsciiOutput {
+    /**
+     * The extension of gzip compressed files.
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+
     private static final double BASE_LINE_SPACING = 0.8;
     private static final double BASE_FONT_SIZE = 150.0;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+    // The HTML representation of each char which must be escaped, indexed by the char (null if not escaped)
+    private static final char[][] ESCAPE_TABLE = createEscapeTable();
+    private static final int MAX_ESCAPE_LENGTH = 5;
 
     private final String fontName;
     private final String filename;
+    private final boolean compress;
 
+    /**
+     * Constructs a new HtmlAsciiOutput, writing an uncompressed file.
+     * @param filename The name of the file to write to
+     * @param fontName The name of the font to display the chars in
+     */
     public HtmlAsciiOutput(String filename, String fontName) {
+        this(filename, fontName, false);
+    }
+
+    /**
+     * Constructs a new HtmlAsciiOutput.
+     * @param filename The name of the file to write to
+     * @param fontName The name of the font to display the chars in
+     * @param compress True if the file should be gzip compressed, false otherwise
+     */
+    public HtmlAsciiOutput(String filename, String fontName, boolean compress) {
         this.fontName = fontName;
         this.filename = filename;
+        this.compress = compress;
     }
 
     @Override
     public void out(char[][] chars) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(String.format(
-                "<!DOCTYPE html>\n"+
-                "<html>\n"+
-                "<body style=\""+
-                    "\tCOLOR:#000000;"+
-                    "\tTEXT-ALIGN:center;"+
-                    "\tFONT-SIZE:1px;\">\n"+
-                "<p style=\""+
-                    "\twhite-space:pre;"+
-                    "\tFONT-FAMILY:%s;"+
-                    "\tFONT-SIZE:%frem;"+
-                    "\tLETTER-SPACING:0.15em;"+
-                    "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
-
-            for(int y = 0 ; y < chars.length ; y++) {
-                for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
-                }
-                writer.newLine();
-            }
-            writer.write(
-                "</p>\n"+
-                "</body>\n"+
-                "</html>\n");
+        try(FileChannel fileChannel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            WritableByteChannel channel = compress ?
+                Channels.newChannel(new GZIPOutputStream(
+                        Channels.newOutputStream(fileChannel), WRITE_BUFFER_SIZE)) :
+                fileChannel) {
+            write(chars, channel);
         } catch(IOException e) {
             Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
         }
     }
+
+    /**
+     * Writes the HTML of the given chars to the given stream, rather than to the file.
+     * The HTML is never compressed here, as the stream itself may compress it.
+     * The stream is not closed.
+     * @param chars The chars to write
+     * @param outputStream The stream to write to
+     * @throws IOException If writing to the stream failed
+     */
+    public void out(char[][] chars, OutputStream outputStream) throws IOException {
+        write(chars, Channels.newChannel(outputStream));
+    }
+
+    /**
+     * Writes the HTML of the given chars to the given channel.
+     * @param chars The chars to write
+     * @param channel The channel to write to
+     * @throws IOException If writing to the channel failed
+     */
+    private void write(char[][] chars, WritableByteChannel channel) throws IOException {
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // A single row buffer, and a single write buffer, are reused for all the rows
+        int maxRowLength = 0;
+        for (char[] row : chars) {
+            maxRowLength = Math.max(maxRowLength, row.length);
+        }
+        CharBuffer rowBuffer = CharBuffer.allocate(maxRowLength * MAX_ESCAPE_LENGTH + LINE_SEPARATOR.length);
+        int maxRowBytes = (int) Math.ceil(rowBuffer.capacity() * encoder.maxBytesPerChar());
+        ByteBuffer writeBuffer = ByteBuffer.allocate(Math.max(WRITE_BUFFER_SIZE, maxRowBytes));
+
+        writeText(String.format(
+            "<!DOCTYPE html>\n"+
+            "<html>\n"+
+            "<body style=\""+
+                "\tCOLOR:#000000;"+
+                "\tTEXT-ALIGN:center;"+
+                "\tFONT-SIZE:1px;\">\n"+
+            "<p style=\""+
+                "\twhite-space:pre;"+
+                "\tFONT-FAMILY:%s;"+
+                "\tFONT-SIZE:%frem;"+
+                "\tLETTER-SPACING:0.15em;"+
+                "\tLINE-HEIGHT:%fem;\">\n",
+                fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING),
+                encoder, writeBuffer, channel);
+
+        for(int y = 0 ; y < chars.length ; y++) {
+            rowBuffer.clear();
+            for (char c : chars[y]) {
+                char[] htmlRep = (c < ESCAPE_TABLE.length) ? ESCAPE_TABLE[c] : null;
+                if (null == htmlRep) {
+                    rowBuffer.put(c);
+                } else {
+                    rowBuffer.put(htmlRep);
+                }
+            }
+            rowBuffer.put(LINE_SEPARATOR);
+            rowBuffer.flip();
+
+            if (writeBuffer.remaining() < maxRowBytes) {
+                flush(writeBuffer, channel);
+            }
+            encoder.reset();
+            encoder.encode(rowBuffer, writeBuffer, true);
+            encoder.flush(writeBuffer);
+        }
+        writeText(
+            "</p>\n"+
+            "</body>\n"+
+            "</html>\n",
+                encoder, writeBuffer, channel);
+        flush(writeBuffer, channel);
+    }
+
+    /**
+     * Encodes the given text to the write buffer, flushing the buffer to the channel as needed.
+     * @param text The text to write
+     * @param encoder The encoder of the text
+     * @param writeBuffer The buffer to encode the text to
+     * @param channel The channel to flush the buffer to
+     * @throws IOException If writing to the channel failed
+     */
+    private static void writeText(String text, CharsetEncoder encoder, ByteBuffer writeBuffer,
+                                  WritableByteChannel channel) throws IOException {
+        CharBuffer textBuffer = CharBuffer.wrap(text);
+        encoder.reset();
+        while (encoder.encode(textBuffer, writeBuffer, true).isOverflow()) {
+            flush(writeBuffer, channel);
+        }
+        while (encoder.flush(writeBuffer).isOverflow()) {
+            flush(writeBuffer, channel);
+        }
+    }
+
+    /**
+     * Writes the content of the given buffer to the channel, and clears the buffer.
+     * @param writeBuffer The buffer to write
+     * @param channel The channel to write to
+     * @throws IOException If writing to the channel failed
+     */
+    private static void flush(ByteBuffer writeBuffer, WritableByteChannel channel) throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    /**
+     * @return A table of the HTML representation of the chars which must be escaped, indexed by the char
+     */
+    private static char[][] createEscapeTable() {
+        char[][] escapeTable = new char['>' + 1][];
+        escapeTable['<'] = "&lt;".toCharArray();
+        escapeTable['>'] = "&gt;".toCharArray();
+        escapeTable['&'] = "&amp;".toCharArray();
+        return escapeTable;
+    }
 }
@@ -6,6 +6,8 @@ package exceptions;
  */
 public class ShellCommandException extends Exception {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * @param message The message to be displayed when the exception is thrown.
      */
@@ -10,6 +10,19 @@ public abstract class BaseImage {
     private static final double RED_GRAYSCALE_WEIGHT = 0.2126;
     private static final double GREEN_GRAYSCALE_WEIGHT = 0.7152;
     private static final double BLUE_GRAYSCALE_WEIGHT = 0.0722;
+    // The grayscale weights scaled to integers, allowing exact accumulation of grayscale values
+    private static final int GRAYSCALE_WEIGHT_SCALE = 10000;
+    private static final int RED_SCALED_WEIGHT =
+            (int) Math.round(RED_GRAYSCALE_WEIGHT * GRAYSCALE_WEIGHT_SCALE);
+    private static final int GREEN_SCALED_WEIGHT =
+            (int) Math.round(GREEN_GRAYSCALE_WEIGHT * GRAYSCALE_WEIGHT_SCALE);
+    private static final int BLUE_SCALED_WEIGHT =
+            (int) Math.round(BLUE_GRAYSCALE_WEIGHT * GRAYSCALE_WEIGHT_SCALE);
+
+    /**
+     * The scaled grayscale value of a white pixel, the maximal scaled grayscale value.
+     */
+    static final long MAX_SCALED_GRAYSCALE = 255L * GRAYSCALE_WEIGHT_SCALE;
 
     /**
      * @return The width of the image
@@ -28,6 +41,17 @@ public abstract class BaseImage {
      */
     public abstract Color getPixel(int x, int y);
 
+    /**
+     * Retrieves the pixel color values at the given coordinates as a packed integer,
+     * without allocating a Color object. Subclasses holding packed pixels should override this.
+     * @param x The row coordinate of the pixel
+     * @param y The column coordinate of the pixel
+     * @return The pixel color values at the given coordinates, packed as ARGB (8 bits per channel)
+     */
+    public int getRGB(int x, int y) {
+        return getPixel(x, y).getRGB();
+    }
+
     /**
      * @return The pixel array of the image
      */
@@ -43,21 +67,56 @@ public abstract class BaseImage {
 
     /**
      * Calculates the brightness of the image.
+     * The pixels are read through getRGB, so no pixel array (or Color object) is allocated.
      * @return The brightness of the image
      */
     public double getImageBrightness() {
-        Color[][] pixelArray = getPixelArray();
-        double grayscaleSum = 0;
-        for (int row = 0; row < getHeight(); row++) {
-            for (int col = 0; col < getWidth(); col++) {
-                Color currentPixel = pixelArray[row][col];
-                double red = currentPixel.getRed() * RED_GRAYSCALE_WEIGHT;
-                double green = currentPixel.getGreen() * GREEN_GRAYSCALE_WEIGHT;
-                double blue = currentPixel.getBlue() * BLUE_GRAYSCALE_WEIGHT;
-                grayscaleSum += red + green + blue;
+        int height = getHeight();
+        int width = getWidth();
+        return getBrightness(getRegionGrayscaleSum(0, 0, height, width), (long) height * width);
+    }
+
+    /**
+     * Calculates the sum of the scaled grayscale values of the given region of the image.
+     * Subclasses which can calculate it without reading each pixel should override this.
+     * @param row The row coordinate of the top-left pixel of the region
+     * @param col The column coordinate of the top-left pixel of the region
+     * @param regionHeight The number of rows in the region
+     * @param regionWidth The number of columns in the region
+     * @return The sum of the scaled grayscale values of the region
+     */
+    long getRegionGrayscaleSum(int row, int col, int regionHeight, int regionWidth) {
+        int lastRow = row + regionHeight;
+        int lastCol = col + regionWidth;
+        long grayscaleSum = 0;
+        for (int currentRow = row; currentRow < lastRow; currentRow++) {
+            for (int currentCol = col; currentCol < lastCol; currentCol++) {
+                grayscaleSum += getScaledGrayscale(getRGB(currentRow, currentCol));
             }
         }
+        return grayscaleSum;
+    }
+
+    /**
+     * Calculates the brightness of pixels from the sum of their scaled grayscale values.
+     * @param grayscaleSum The sum of the scaled grayscale values of the pixels
+     * @param pixels The number of pixels
+     * @return The brightness of the pixels, between 0 and 1
+     */
+    static double getBrightness(long grayscaleSum, long pixels) {
         // Normalize the sum to be between 0 and 1
-        return grayscaleSum / (getHeight() * getWidth() * 255);
+        return (double) grayscaleSum / (pixels * MAX_SCALED_GRAYSCALE);
+    }
+
+    /**
+     * Calculates the grayscale value of the given pixel, scaled to an integer so that
+     * grayscale values can be summed without loss of precision.
+     * @param rgb The pixel to calculate the grayscale value of, packed as ARGB
+     * @return The scaled grayscale value, between 0 and MAX_SCALED_GRAYSCALE
+     */
+    static int getScaledGrayscale(int rgb) {
+        return ((rgb >> 16) & 0xFF) * RED_SCALED_WEIGHT +
+                ((rgb >> 8) & 0xFF) * GREEN_SCALED_WEIGHT +
+                (rgb & 0xFF) * BLUE_SCALED_WEIGHT;
     }
 }
@@ -1,5 +1,8 @@
 package image;
 
+import instrumentation.Stage;
+import instrumentation.StageStatistics;
+
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -8,41 +11,63 @@ import java.io.IOException;
 
 /**
  * A simple (raw) representation of an image.
+ * The pixels are stored packed as ARGB integers (row after row),
+ * rather than as a Color object per pixel.
  * @author Nimrod M.
  */
 public class Image extends BaseImage {
 
-    private final Color[][] pixelArray;
+    private final int[] pixels;
     private final int width;
     private final int height;
 
     /**
      * Constructs a new Image object using the given file.
+     * The decoding is recorded in the global stage statistics.
      * @param filename The name of the file to be read the image from
-     * @throws IOException If the file is not found
+     * @throws IOException If the file is not found, or is not a readable image
      */
     public Image(String filename) throws IOException {
-        BufferedImage im = ImageIO.read(new File(filename));
-        width = im.getWidth();
-        height = im.getHeight();
+        this(StageStatistics.getGlobal().time(Stage.DECODE, () -> decode(filename)));
+    }
 
+    /**
+     * Constructs a new Image object sharing the pixels of the given image.
+     * @param image The image whose pixels are shared
+     */
+    private Image(Image image) {
+        this(image.pixels, image.width, image.height);
+    }
+
+    /**
+     * Constructs a new Image object using the given pixel array (and its dimensions).
+     * @param pixelArray The pixel array of the image
+     * @param width The width of the image
+     * @param height The height of the image
+     */
+    public Image(Color[][] pixelArray, int width, int height) {
+        this.width = width;
+        this.height = height;
 
-        pixelArray = new Color[height][width];
+        pixels = new int[height * width];
         for (int i = 0; i < height; i++) {
             for (int j = 0; j < width; j++) {
-                pixelArray[i][j]=new Color(im.getRGB(j, i));
+                pixels[i * width + j] = pixelArray[i][j].getRGB();
             }
         }
     }
 
     /**
-     * Constructs a new Image object using the given pixel array (and its dimensions).
-     * @param pixelArray The pixel array of the image
+     * Constructs a new Image object using the given packed pixels (and their dimensions).
+     * The pixels are not copied, hence should not be modified after the construction.
+     * @param pixels The pixels of the image, packed as ARGB, row after row
      * @param width The width of the image
      * @param height The height of the image
      */
-    public Image(Color[][] pixelArray, int width, int height) {
-        this.pixelArray = pixelArray;
+    public Image(int[] pixels, int width, int height) {
+        assert pixels.length == width * height : "The pixels do not match the dimensions";
+
+        this.pixels = pixels;
         this.width = width;
         this.height = height;
     }
@@ -65,13 +90,45 @@ public class Image extends BaseImage {
 
     /**
      * Retrieves the pixel color values at the given coordinates.
+     * Kept for compatibility, getRGB should be preferred as it does not allocate.
      * @param x The row coordinate of the pixel
      * @param y The column coordinate of the pixel
      * @return The pixel color values at the given coordinates
      */
     @Override
     public Color getPixel(int x, int y) {
-        return pixelArray[x][y];
+        return new Color(pixels[x * width + y]);
+    }
+
+    /**
+     * Retrieves the pixel color values at the given coordinates as a packed integer.
+     * @param x The row coordinate of the pixel
+     * @param y The column coordinate of the pixel
+     * @return The pixel color values at the given coordinates, packed as ARGB
+     */
+    @Override
+    public int getRGB(int x, int y) {
+        return pixels[x * width + y];
+    }
+
+    /**
+     * Calculates the sum of the scaled grayscale values of the given region, directly over the packed pixels.
+     * @param row The row coordinate of the top-left pixel of the region
+     * @param col The column coordinate of the top-left pixel of the region
+     * @param regionHeight The number of rows in the region
+     * @param regionWidth The number of columns in the region
+     * @return The sum of the scaled grayscale values of the region
+     */
+    @Override
+    long getRegionGrayscaleSum(int row, int col, int regionHeight, int regionWidth) {
+        long grayscaleSum = 0;
+        for (int currentRow = row; currentRow < row + regionHeight; currentRow++) {
+            int rowStart = currentRow * width + col;
+            for (int i = rowStart; i < rowStart + regionWidth; i++) {
+                grayscaleSum += getScaledGrayscale(pixels[i]);
+            }
+        }
+        return grayscaleSum;
     }
 
     /**
@@ -79,15 +136,9 @@ public class Image extends BaseImage {
      * @param fileName The name of the file to save the image to
      */
     public void saveImage(String fileName){
-        // Initialize BufferedImage, assuming Color[][] is already properly populated.
-        BufferedImage bufferedImage = new BufferedImage(pixelArray[0].length, pixelArray.length,
-                BufferedImage.TYPE_INT_RGB);
-        // Set each pixel of the BufferedImage to the color from the Color[][].
-        for (int x = 0; x < pixelArray.length; x++) {
-            for (int y = 0; y < pixelArray[x].length; y++) {
-                bufferedImage.setRGB(y, x, pixelArray[x][y].getRGB());
-            }
-        }
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        // Setting all the pixels at once, rather than one by one
+        bufferedImage.setRGB(0, 0, width, height, pixels, 0, width);
         File outputfile = new File(fileName+".jpeg");
         try {
             ImageIO.write(bufferedImage, "jpeg", outputfile);
@@ -95,4 +146,22 @@ public class Image extends BaseImage {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * @param filename The name of the file to be read the image from
+     * @return The decoded image
+     * @throws IOException If the file is not found, or is not a readable image
+     */
+    private static Image decode(String filename) throws IOException {
+        BufferedImage im = ImageIO.read(new File(filename));
+        // ImageIO returns null (rather than throwing) for files of no known image format
+        if (null == im) {
+            throw new IOException("Unknown image format: " + filename);
+        }
+        int width = im.getWidth();
+        int height = im.getHeight();
+
+        // Reading all the pixels at once, rather than one by one
+        return new Image(im.getRGB(0, 0, width, height, null, 0, width), width, height);
+    }
 }
@@ -0,0 +1,114 @@
+package image;
+
+import instrumentation.Stage;
+import instrumentation.StageStatistics;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Loads images from files, either by decoding them or by mapping their raw pixel stores.
+ * @author Nimrod M.
+ */
+public class ImageLoader {
+
+    /**
+     * Constructs a new ImageLoader object.
+     * Per this implementation, the constructor is not used
+     * and no object of this class differs from another.
+     */
+    public ImageLoader() {}
+
+    /**
+     * Loads the image of the given file. Raw pixel stores (by their extension) are mapped
+     * rather than decoded, any other file is decoded as an image.
+     * @param filename The name of the file to be read the image from
+     * @return The loaded image
+     * @throws IOException If the file is not found, or is not a readable image or store
+     */
+    public static BaseImage load(String filename) throws IOException {
+        if (filename.endsWith(MappedImage.STORE_EXTENSION)) {
+            return MappedImage.open(filename);
+        }
+        return new Image(filename);
+    }
+
+    /**
+     * Decodes the image encoded in the given data (such as the content of an image file).
+     * The decoding is recorded in the global stage statistics.
+     * @param imageData The encoded image
+     * @return The decoded image
+     * @throws IOException If the data is not a readable image
+     */
+    public static BaseImage load(byte[] imageData) throws IOException {
+        return StageStatistics.getGlobal().time(Stage.DECODE, () -> {
+            BufferedImage im = ImageIO.read(new ByteArrayInputStream(imageData));
+            // ImageIO returns null (rather than throwing) for data of no known image format
+            if (null == im) {
+                throw new IOException("Unknown image format");
+            }
+            int width = im.getWidth();
+            int height = im.getHeight();
+            return new Image(im.getRGB(0, 0, width, height, null, 0, width), width, height);
+        });
+    }
+
+    /**
+     * Reads the dimensions of the image of the given file from its header, without decoding its pixels,
+     * so the image can be rejected before it is loaded.
+     * @param filename The name of the image file (or raw pixel store)
+     * @return The dimensions of the image
+     * @throws IOException If the file is not found, or is not a readable image or store
+     */
+    public static Dimension readDimensions(String filename) throws IOException {
+        if (filename.endsWith(MappedImage.STORE_EXTENSION)) {
+            return MappedImage.readDimensions(filename);
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+            return readDimensions(input, filename);
+        }
+    }
+
+    /**
+     * Reads the dimensions of the image encoded in the given data from its header, without decoding
+     * its pixels, so the image can be rejected before it is decoded.
+     * @param imageData The encoded image
+     * @return The dimensions of the image
+     * @throws IOException If the data is not a readable image
+     */
+    public static Dimension readDimensions(byte[] imageData) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            return readDimensions(input, "image data");
+        }
+    }
+
+    /**
+     * @param input The stream of the encoded image, null if it could not be created
+     * @param source A description of the image, for error messages
+     * @return The dimensions of the image, read from its header
+     * @throws IOException If the stream is not a readable image
+     */
+    private static Dimension readDimensions(ImageInputStream input, String source) throws IOException {
+        if (null == input) {
+            throw new IOException("Cannot read " + source);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("Unknown image format: " + source);
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            return new Dimension(reader.getWidth(0), reader.getHeight(0));
+        } finally {
+            reader.dispose();
+        }
+    }
+}
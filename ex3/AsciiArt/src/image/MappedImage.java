@@ -0,0 +1,272 @@
+package image;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An image whose pixels are kept in a raw pixel store - a file of packed ARGB pixels - mapped to memory.
+ * The image is decoded once, when the store is created, and opening the store decodes nothing:
+ * the pixels are paged in by the operating system as they are read, and are never on the Java heap.
+ * Stores larger than a single mapping are mapped in several chunks.
+ * @author Nimrod M.
+ */
+public class MappedImage extends BaseImage {
+
+    /**
+     * The extension of raw pixel store files.
+     */
+    public static final String STORE_EXTENSION = ".argb";
+
+    // Identifies the file format, so files of other formats (or versions) are not misread
+    private static final int FILE_MAGIC = 0x41_52_47_42;
+    // The magic, the width and the height
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    // Each chunk maps 2^28 pixels (1GB), within the limit of a single mapping
+    private static final int CHUNK_SHIFT = 28;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    // The number of pixels buffered before being written, when creating a store
+    private static final int CREATE_BUFFER_PIXELS = 1 << 20;
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private final IntBuffer[] chunks;
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructs a new MappedImage over the mapped chunks of a store.
+     * @param chunks The mapped pixels, in chunks of 2^CHUNK_SHIFT pixels (except for the last one)
+     * @param width The width of the image
+     * @param height The height of the image
+     */
+    private MappedImage(IntBuffer[] chunks, int width, int height) {
+        this.chunks = chunks;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Opens an existing raw pixel store, without decoding or reading its pixels.
+     * @param storeFilename The name of the store file
+     * @return The image of the store
+     * @throws IOException If the file is not found, or is not a valid store
+     */
+    public static MappedImage open(String storeFilename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(storeFilename), StandardOpenOption.READ)) {
+            Dimension dimensions = readDimensions(channel, storeFilename);
+            int width = dimensions.width;
+            int height = dimensions.height;
+            long pixels = (long) width * height;
+
+            // The mappings remain valid after the channel is closed
+            IntBuffer[] chunks = new IntBuffer[(int) ((pixels + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long firstPixel = (long) i << CHUNK_SHIFT;
+                long chunkPixels = Math.min(pixels - firstPixel, 1L << CHUNK_SHIFT);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + firstPixel * Integer.BYTES, chunkPixels * Integer.BYTES).asIntBuffer();
+            }
+            return new MappedImage(chunks, width, height);
+        }
+    }
+
+    /**
+     * Reads the dimensions of the image of a raw pixel store, from its header only.
+     * @param storeFilename The name of the store file
+     * @return The dimensions of the image
+     * @throws IOException If the file is not found, or is not a valid store
+     */
+    public static Dimension readDimensions(String storeFilename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(storeFilename), StandardOpenOption.READ)) {
+            return readDimensions(channel, storeFilename);
+        }
+    }
+
+    /**
+     * Creates a raw pixel store of the given image file, decoding the image once, top to bottom,
+     * and writing its rows as they are decoded, so the image is not held in memory as a whole
+     * (unless its format may only be decoded whole). The store is written to a temporary file first,
+     * and replaces the store file (if it exists) only once complete.
+     * @param imageFilename The name of the file to be read the image from
+     * @param storeFilename The name of the store file to create
+     * @return The image of the created store
+     * @throws IOException If the image could not be decoded, or the store could not be written
+     */
+    public static MappedImage create(String imageFilename, String storeFilename) throws IOException {
+        Path storePath = Paths.get(storeFilename);
+        Path temporaryPath = Paths.get(storeFilename + TEMPORARY_EXTENSION);
+        try (TiledImageReader reader = new TiledImageReader(imageFilename);
+             FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int width = reader.getWidth();
+            int height = reader.getHeight();
+            writeFully(ByteBuffer.allocate(HEADER_BYTES).putInt(FILE_MAGIC).putInt(width).putInt(height).flip(),
+                    channel);
+
+            StoreWriter storeWriter = new StoreWriter(channel, width);
+            try {
+                reader.decodeRows(1, storeWriter);
+                storeWriter.flush();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+
+        Files.move(temporaryPath, storePath, StandardCopyOption.REPLACE_EXISTING);
+        return open(storeFilename);
+    }
+
+    /**
+     * @return The width of the image
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the image
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Retrieves the pixel color values at the given coordinates.
+     * Kept for compatibility, getRGB should be preferred as it does not allocate.
+     * @param x The row coordinate of the pixel
+     * @param y The column coordinate of the pixel
+     * @return The pixel color values at the given coordinates
+     */
+    @Override
+    public Color getPixel(int x, int y) {
+        return new Color(getRGB(x, y));
+    }
+
+    /**
+     * Retrieves the pixel color values at the given coordinates as a packed integer.
+     * @param x The row coordinate of the pixel
+     * @param y The column coordinate of the pixel
+     * @return The pixel color values at the given coordinates, packed as ARGB
+     */
+    @Override
+    public int getRGB(int x, int y) {
+        long index = (long) x * width + y;
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    /**
+     * Reads the header of a store, and validates it against the size of the store.
+     * @param channel The channel of the store, at its beginning
+     * @param storeFilename The name of the store file, for error messages
+     * @return The dimensions of the image
+     * @throws IOException If the file is not a valid store
+     */
+    private static Dimension readDimensions(FileChannel channel, String storeFilename) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining() && (channel.read(header) >= 0)) { }
+        header.flip();
+        if ((HEADER_BYTES != header.remaining()) || (FILE_MAGIC != header.getInt())) {
+            throw new IOException("Not a pixel store: " + storeFilename);
+        }
+        int width = header.getInt();
+        int height = header.getInt();
+        if ((width <= 0) || (height <= 0) ||
+                (channel.size() != HEADER_BYTES + (long) width * height * Integer.BYTES)) {
+            throw new IOException("Corrupted pixel store: " + storeFilename);
+        }
+        return new Dimension(width, height);
+    }
+
+    /**
+     * Writes the content of the given buffer to the channel.
+     * @param buffer The buffer to write
+     * @param channel The channel to write to
+     * @throws IOException If writing to the channel failed
+     */
+    private static void writeFully(ByteBuffer buffer, FileChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes the decoded rows of an image to the pixel store, each at its own position.
+     * Consecutive rows are buffered and written together. If the decoding restarts,
+     * the rows are simply decoded and written again.
+     */
+    private static class StoreWriter implements TiledImageReader.RowConsumer {
+
+        private final FileChannel channel;
+        private final int width;
+        private final ByteBuffer buffer;
+        private final IntBuffer bufferPixels;
+        private int firstBufferedRow = 0;
+        private int bufferedRows = 0;
+
+        /**
+         * @param channel The channel of the store, whose header is already written
+         * @param width The width of the image
+         */
+        StoreWriter(FileChannel channel, int width) {
+            this.channel = channel;
+            this.width = width;
+            buffer = ByteBuffer.allocate(Math.max(1, CREATE_BUFFER_PIXELS / width) * width * Integer.BYTES);
+            bufferPixels = buffer.asIntBuffer();
+        }
+
+        /**
+         * Discards the buffered rows, as they are decoded again.
+         */
+        @Override
+        public void restart() {
+            bufferedRows = 0;
+            bufferPixels.clear();
+        }
+
+        /**
+         * Buffers the row, writing the buffered rows first if the row does not follow them.
+         * @param row The index of the row
+         * @param pixels The pixels of the row, packed as ARGB
+         * @throws UncheckedIOException If writing to the store failed
+         */
+        @Override
+        public void accept(int row, int[] pixels) {
+            if ((firstBufferedRow + bufferedRows != row) || (bufferPixels.remaining() < width)) {
+                flush();
+                firstBufferedRow = row;
+            }
+            bufferPixels.put(pixels, 0, width);
+            bufferedRows++;
+        }
+
+        /**
+         * Writes the buffered rows to their position in the store.
+         * @throws UncheckedIOException If writing to the store failed
+         */
+        void flush() {
+            buffer.clear().limit(bufferPixels.position() * Integer.BYTES);
+            long position = HEADER_BYTES + (long) firstBufferedRow * width * Integer.BYTES;
+            try {
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            restart();
+        }
+    }
+}
@@ -1,13 +1,33 @@
 package image;
 
 import java.awt.*;
+import java.util.Arrays;
 
 /**
  * Representing an image padded to nearest square.
+ * The padding is white, and is never stored - it is either returned on demand,
+ * or accounted for analytically when calculating the brightness of regions.
  * @author Nimrod M.
  */
 public class PaddedImage extends BaseImage {
 
+    private static final int WHITE_RGB = Color.WHITE.getRGB();
+    private static final long WHITE_SCALED_GRAYSCALE = getScaledGrayscale(WHITE_RGB);
+
+    /**
+     * Calculates the sum of the scaled grayscale values of a region of the original image.
+     */
+    private interface OriginalRegionSum {
+        /**
+         * @param row The row coordinate of the top-left pixel of the region, in the original image
+         * @param col The column coordinate of the top-left pixel of the region, in the original image
+         * @param regionHeight The number of rows in the region
+         * @param regionWidth The number of columns in the region
+         * @return The sum of the scaled grayscale values of the region
+         */
+        long get(int row, int col, int regionHeight, int regionWidth);
+    }
+
     private final BaseImage originalImage;
     private final int paddedWidth;
     private final int paddedHeight;
@@ -21,9 +41,34 @@ public class PaddedImage extends BaseImage {
      * @param image The image to be padded
      */
     public PaddedImage(BaseImage image) {
+        this(image, roundToNextPowerOf2(image.getWidth()), roundToNextPowerOf2(image.getHeight()));
+    }
+
+    /**
+     * Constructs a new PaddedImage object using the given image, padded only as much as needed
+     * for dividing it to sub images in the given resolution. The sub image dimension is the smallest
+     * one covering the image's width, and each dimension is padded to a multiple of it,
+     * rather than to the next power of 2.
+     * Such image is only suitable for dividing to sub images in the given resolution.
+     * @param image The image to be padded
+     * @param resolution The number of sub images in each row
+     */
+    public PaddedImage(BaseImage image, int resolution) {
+        // The width is a whole row of sub images, even if a narrower multiple covers the image
+        this(image, resolution * getMinimalSubImageDimension(image, resolution),
+                roundToNextMultiple(image.getHeight(), getMinimalSubImageDimension(image, resolution)));
+    }
+
+    /**
+     * Constructs a new PaddedImage object using the given image, padded to the given dimensions.
+     * @param image The image to be padded
+     * @param paddedWidth The width of the padded image
+     * @param paddedHeight The height of the padded image
+     */
+    private PaddedImage(BaseImage image, int paddedWidth, int paddedHeight) {
         originalImage = image;
-        paddedWidth = roundToNextPowerOf2(image.getWidth());
-        paddedHeight = roundToNextPowerOf2(image.getHeight());
+        this.paddedWidth = paddedWidth;
+        this.paddedHeight = paddedHeight;
         // The padding added to the original image,
         // these are balanced on both sides of the image respectively
         rowPadding = (paddedHeight - originalImage.getHeight()) / 2;
@@ -55,13 +100,10 @@ public class PaddedImage extends BaseImage {
      */
     @Override
     public Color getPixel(int x, int y) {
-        assert x > 0 && y > 0 && x < paddedWidth && y < paddedHeight : "The pixel is out of bounds";
+        assert x >= 0 && y >= 0 && x < paddedHeight && y < paddedWidth : "The pixel is out of bounds";
 
         // The padding is virtual and not part of the original image!
-        if (x < rowPadding || // Checking the "top" padding
-            y < colPadding || // Checking the "left" padding
-            x >= originalImage.getHeight() + rowPadding || // Checking the "bottom" padding
-            y >= originalImage.getWidth() + colPadding) {  // Checking the "right" padding
+        if (isPadding(x, y)) {
             return Color.WHITE;
         }
         // If the pixel is not in the padding area, we return the pixel from the original image
@@ -69,22 +111,37 @@ public class PaddedImage extends BaseImage {
     }
 
     /**
+     * Retrieves the pixel color values at the given coordinates as a packed integer.
+     * If the pixel is in the padding area, it will return white.
+     * @param x The row coordinate of the pixel
+     * @param y The column coordinate of the pixel
+     * @return The pixel color values at the given coordinates, packed as ARGB
+     */
+    @Override
+    public int getRGB(int x, int y) {
+        assert x >= 0 && y >= 0 && x < paddedHeight && y < paddedWidth : "The pixel is out of bounds";
+
+        if (isPadding(x, y)) {
+            return WHITE_RGB;
+        }
+        return originalImage.getRGB(x-rowPadding, y-colPadding);
+    }
+
+    /**
+     * Divides the padded image to sub images. The sub images are views of the padded image,
+     * so no pixels are copied. When the sub images are only needed one at a time,
+     * getSubImage should be preferred, avoiding the array altogether.
      * @param resolution The number of sub images in each row
      * @return A 2D array of sub images
      */
-    public Image[][] getSubImages(int resolution) {
-        // The sub image is square, hence the width and height are the same.
-        int subImageDimension = paddedWidth / resolution;
-        int subImageRows = paddedHeight / subImageDimension;
-        Image[][] subImages = new Image[subImageRows][resolution];
+    public BaseImage[][] getSubImages(int resolution) {
+        int subImageRows = getSubImageRows(resolution);
+        BaseImage[][] subImages = new BaseImage[subImageRows][resolution];
 
         for (int currentSubImageRow = 0; currentSubImageRow < subImageRows; currentSubImageRow++) {
             for (int currentSubImageCol = 0; currentSubImageCol < resolution; currentSubImageCol++) {
                 subImages[currentSubImageRow][currentSubImageCol] =
-                        getSubImage(
-                                currentSubImageRow * subImageDimension,
-                                currentSubImageCol * subImageDimension,
-                                subImageDimension);
+                        getSubImage(currentSubImageRow, currentSubImageCol, resolution);
             }
         }
 
@@ -92,30 +149,194 @@ public class PaddedImage extends BaseImage {
     }
 
     /**
-     * Creates a single sub image from the padded image,
-     * at the given coordinates in respect to the given dimensions.
-     * @param x The row coordinate of the sub image
-     * @param y The column coordinate of the sub image
-     * @param dimension The dimension of the sub image
-     * @return A sub image of the padded image
+     * Creates a single sub image of the padded image, as a view of the padded image (no pixels are copied).
+     * @param subImageRow The row of the sub image, in sub images
+     * @param subImageCol The column of the sub image, in sub images
+     * @param resolution The number of sub images in each row
+     * @return The sub image at the given row and column
+     */
+    public BaseImage getSubImage(int subImageRow, int subImageCol, int resolution) {
+        int subImageDimension = getSubImageDimension(resolution);
+        return new SubImage(this, subImageRow * subImageDimension, subImageCol * subImageDimension,
+                subImageDimension, subImageDimension);
+    }
+
+    /**
+     * @param resolution The number of sub images in each row
+     * @return The dimension (both width and height) of each sub image in the given resolution
+     */
+    public int getSubImageDimension(int resolution) {
+        // The sub image is square, hence the width and height are the same.
+        return paddedWidth / resolution;
+    }
+
+    /**
+     * Checks whether the padded image divides to whole sub images in the given resolution. Otherwise,
+     * the sub images would leave out the last columns and rows of the padded image, cropping the image.
+     * A tile aligned padding is always divided evenly in its own resolution, while a power of 2 padding
+     * is divided evenly only in powers of 2 within its dimensions.
+     * @param resolution The number of sub images in each row
+     * @return True if the sub images cover the whole padded image, false otherwise
+     */
+    public boolean isEvenlyDivided(int resolution) {
+        if ((resolution <= 0) || (resolution > paddedWidth) || (0 != paddedWidth % resolution)) {
+            return false;
+        }
+        return 0 == paddedHeight % getSubImageDimension(resolution);
+    }
+
+    /**
+     * @param resolution The number of sub images in each row
+     * @return The number of rows of sub images in the given resolution
+     */
+    public int getSubImageRows(int resolution) {
+        return paddedHeight / getSubImageDimension(resolution);
+    }
+
+    /**
+     * Calculates the sum of the scaled grayscale values of the given region of the padded image,
+     * taking the original pixels from the given summed-area table of the original image,
+     * and counting the padding pixels as white. No pixel is read, hence this takes constant time.
+     * @param originalImageTable The summed-area table of the original image
+     * @param row The row coordinate of the top-left pixel of the region
+     * @param col The column coordinate of the top-left pixel of the region
+     * @param regionHeight The number of rows in the region
+     * @param regionWidth The number of columns in the region
+     * @return The sum of the scaled grayscale values of the region
+     */
+    public long getRegionGrayscaleSum(SummedAreaTable originalImageTable,
+                                      int row, int col, int regionHeight, int regionWidth) {
+        assert (originalImageTable.getHeight() == originalImage.getHeight()) &&
+                (originalImageTable.getWidth() == originalImage.getWidth()) : "The table is of another image";
+
+        return getRegionGrayscaleSum(
+                row, col, regionHeight, regionWidth, originalImageTable::getRegionGrayscaleSum);
+    }
+
+    /**
+     * Calculates the sum of the scaled grayscale values of the given region of the padded image,
+     * reading only the pixels of the original image, and counting the padding pixels as white.
+     * @param row The row coordinate of the top-left pixel of the region
+     * @param col The column coordinate of the top-left pixel of the region
+     * @param regionHeight The number of rows in the region
+     * @param regionWidth The number of columns in the region
+     * @return The sum of the scaled grayscale values of the region
      */
-    private Image getSubImage(int x, int y, int dimension) {
-        Color[][] subImagePixelArray = new Color[dimension][dimension];
-        for (int row = 0; row < dimension; row++) {
-            for (int col = 0; col < dimension; col++) {
-                subImagePixelArray[row][col] = getPixel(x + row, y + col);
+    @Override
+    long getRegionGrayscaleSum(int row, int col, int regionHeight, int regionWidth) {
+        return getRegionGrayscaleSum(
+                row, col, regionHeight, regionWidth, originalImage::getRegionGrayscaleSum);
+    }
+
+    /**
+     * Calculates the sums of the scaled grayscale values of a row of sub images, reading each pixel
+     * of the original image covered by them once, row after row. Unlike summing through a summed-area
+     * table, no memory is needed beyond the sums, so this suits images which are not kept on the heap.
+     * @param subImageRow The row of the sub images, in sub images
+     * @param resolution The number of sub images in each row
+     * @param grayscaleSums The array to write the sum of each sub image of the row to
+     */
+    public void getSubImageRowGrayscaleSums(int subImageRow, int resolution, long[] grayscaleSums) {
+        int subImageDimension = getSubImageDimension(resolution);
+        // Every pixel is first counted as white, and then corrected by the original pixels it covers
+        Arrays.fill(grayscaleSums, 0, resolution,
+                (long) subImageDimension * subImageDimension * WHITE_SCALED_GRAYSCALE);
+        int firstRow = Math.max(subImageRow * subImageDimension - rowPadding, 0);
+        int lastRow = Math.min((subImageRow + 1) * subImageDimension - rowPadding, originalImage.getHeight());
+        int width = originalImage.getWidth();
+        for (int row = firstRow; row < lastRow; row++) {
+            for (int col = 0; col < width; col++) {
+                grayscaleSums[(col + colPadding) / subImageDimension] +=
+                        getScaledGrayscale(originalImage.getRGB(row, col)) - WHITE_SCALED_GRAYSCALE;
             }
         }
-        return new Image(subImagePixelArray, dimension, dimension);
+    }
+
+    /**
+     * @return The number of padding rows above the original image
+     */
+    public int getRowPadding() {
+        return rowPadding;
+    }
+
+    /**
+     * @return The number of padding columns left of the original image
+     */
+    public int getColPadding() {
+        return colPadding;
+    }
+
+    /**
+     * Calculates the sum of the scaled grayscale values of the given region of the padded image.
+     * The region is clipped to the original image, whose part is summed by the given function,
+     * and the rest of the region is padding - a known number of white pixels.
+     * @param row The row coordinate of the top-left pixel of the region
+     * @param col The column coordinate of the top-left pixel of the region
+     * @param regionHeight The number of rows in the region
+     * @param regionWidth The number of columns in the region
+     * @param originalRegionSum Sums regions of the original image
+     * @return The sum of the scaled grayscale values of the region
+     */
+    private long getRegionGrayscaleSum(int row, int col, int regionHeight, int regionWidth,
+                                       OriginalRegionSum originalRegionSum) {
+        // The part of the region which overlaps the original image, in the original image's coordinates
+        int firstRow = Math.max(row - rowPadding, 0);
+        int firstCol = Math.max(col - colPadding, 0);
+        int lastRow = Math.min(row + regionHeight - rowPadding, originalImage.getHeight());
+        int lastCol = Math.min(col + regionWidth - colPadding, originalImage.getWidth());
+
+        long regionPixels = (long) regionHeight * regionWidth;
+        if ((firstRow >= lastRow) || (firstCol >= lastCol)) {
+            return regionPixels * WHITE_SCALED_GRAYSCALE;
+        }
+
+        long overlapPixels = (long) (lastRow - firstRow) * (lastCol - firstCol);
+        return originalRegionSum.get(firstRow, firstCol, lastRow - firstRow, lastCol - firstCol) +
+                (regionPixels - overlapPixels) * WHITE_SCALED_GRAYSCALE;
+    }
+
+    /**
+     * @param x The row coordinate of the pixel
+     * @param y The column coordinate of the pixel
+     * @return True if the pixel is in the padding area, false if it is in the original image
+     */
+    private boolean isPadding(int x, int y) {
+        return x < rowPadding || // Checking the "top" padding
+               y < colPadding || // Checking the "left" padding
+               x >= originalImage.getHeight() + rowPadding || // Checking the "bottom" padding
+               y >= originalImage.getWidth() + colPadding;    // Checking the "right" padding
+    }
+
+    /**
+     * @param image The image to be divided to sub images
+     * @param resolution The number of sub images in each row
+     * @return The smallest dimension of the sub images for which the row of sub images covers the image
+     */
+    private static int getMinimalSubImageDimension(BaseImage image, int resolution) {
+        return Math.ceilDiv(image.getWidth(), resolution);
+    }
+
+    /**
+     * Rounds the given number to the next multiple of the given factor that is greater or equal to n.
+     * @param n The number to be rounded
+     * @param factor The factor to round to a multiple of
+     * @return The next multiple of the factor that is greater or equal to n
+     */
+    private static int roundToNextMultiple(int n, int factor) {
+        return Math.ceilDiv(n, factor) * factor;
     }
 
     /**
      * Rounds the given number to the next power of 2 that is greater or equal to n.
+     * Calculated over the bits of n, as the logarithm may be inexact for powers of 2.
      * @param n The number to be rounded
      * @return The next power of 2 that is greater or equal to n
      * @see https://stackoverflow.com/questions/466204/rounding-up-to-next-power-of-2
      */
     private static int roundToNextPowerOf2(int n) {
-        return (int) Math.pow(2, Math.ceil(Math.log(n) / Math.log(2)));
+        if (n <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(n - 1) << 1;
     }
 }
@@ -0,0 +1,19 @@
+package image;
+
+/**
+ * An enum representing the different ways an image may be padded before dividing it to sub images.
+ * @author Nimrod M.
+ */
+public enum PaddingMode {
+    /**
+     * Each dimension of the image is padded to the next power of 2.
+     * The same padded image serves every resolution.
+     */
+    POWER_OF_TWO,
+
+    /**
+     * Each dimension of the image is padded to the smallest multiple of the sub image dimension.
+     * Much less padding is processed, but the padded image serves a single resolution.
+     */
+    TILE_ALIGNED
+}
@@ -0,0 +1,90 @@
+package image;
+
+import java.awt.*;
+
+/**
+ * A view of a rectangular region of another image, as an image of its own.
+ * No pixels are copied - every pixel is read from the parent image on demand,
+ * so creating a sub image costs the same regardless of its size.
+ * @author Nimrod M.
+ */
+public class SubImage extends BaseImage {
+
+    private final BaseImage parentImage;
+    private final int rowOffset;
+    private final int colOffset;
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructs a new SubImage object, viewing the given region of the given image.
+     * @param parentImage The image to view a region of
+     * @param rowOffset The row coordinate of the top-left pixel of the region
+     * @param colOffset The column coordinate of the top-left pixel of the region
+     * @param height The number of rows in the region
+     * @param width The number of columns in the region
+     */
+    public SubImage(BaseImage parentImage, int rowOffset, int colOffset, int height, int width) {
+        assert rowOffset >= 0 && colOffset >= 0 && height > 0 && width > 0 &&
+                rowOffset + height <= parentImage.getHeight() &&
+                colOffset + width <= parentImage.getWidth() : "The region is out of bounds";
+
+        this.parentImage = parentImage;
+        this.rowOffset = rowOffset;
+        this.colOffset = colOffset;
+        this.height = height;
+        this.width = width;
+    }
+
+    /**
+     * @return The width of the sub image
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the sub image
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Retrieves the pixel color values at the given coordinates, relative to the sub image.
+     * @param x The row coordinate of the pixel
+     * @param y The column coordinate of the pixel
+     * @return The pixel color values at the given coordinates
+     */
+    @Override
+    public Color getPixel(int x, int y) {
+        return parentImage.getPixel(rowOffset + x, colOffset + y);
+    }
+
+    /**
+     * Retrieves the pixel color values at the given coordinates, relative to the sub image,
+     * as a packed integer.
+     * @param x The row coordinate of the pixel
+     * @param y The column coordinate of the pixel
+     * @return The pixel color values at the given coordinates, packed as ARGB
+     */
+    @Override
+    public int getRGB(int x, int y) {
+        return parentImage.getRGB(rowOffset + x, colOffset + y);
+    }
+
+    /**
+     * Calculates the sum of the scaled grayscale values of the given region, through the parent image.
+     * @param row The row coordinate of the top-left pixel of the region
+     * @param col The column coordinate of the top-left pixel of the region
+     * @param regionHeight The number of rows in the region
+     * @param regionWidth The number of columns in the region
+     * @return The sum of the scaled grayscale values of the region
+     */
+    @Override
+    long getRegionGrayscaleSum(int row, int col, int regionHeight, int regionWidth) {
+        return parentImage.getRegionGrayscaleSum(rowOffset + row, colOffset + col, regionHeight, regionWidth);
+    }
+}
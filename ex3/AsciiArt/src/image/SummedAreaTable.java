@@ -0,0 +1,119 @@
+package image;
+
+/**
+ * A summed-area table (integral image) of the grayscale values of an image.
+ * Built once per image, it allows calculating the brightness of any rectangular region
+ * of the image in constant time, regardless of the region's size.
+ * @author Nimrod M.
+ */
+public class SummedAreaTable {
+
+    // The largest array the virtual machine reliably allocates
+    private static final long MAX_TABLE_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final long[] table;
+    private final int tableWidth;
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructs a new SummedAreaTable of the given image, passing over its pixels once.
+     * @param image The image to build the table for
+     * @throws IllegalArgumentException If the table of the image cannot be held in a single array
+     */
+    public SummedAreaTable(BaseImage image) {
+        if (!canHold(image)) {
+            throw new IllegalArgumentException("The image is too large for a summed-area table");
+        }
+        width = image.getWidth();
+        height = image.getHeight();
+        // The table has an additional leading row and column of zeros,
+        // so region sums require no special handling of the image edges.
+        // As the whole table fits in an array, no offset into it overflows
+        tableWidth = width + 1;
+        table = new long[(height + 1) * tableWidth];
+
+        for (int row = 0; row < height; row++) {
+            long rowSum = 0;
+            int previousRowOffset = row * tableWidth;
+            int currentRowOffset = previousRowOffset + tableWidth;
+            for (int col = 0; col < width; col++) {
+                rowSum += BaseImage.getScaledGrayscale(image.getRGB(row, col));
+                table[currentRowOffset + col + 1] = rowSum + table[previousRowOffset + col + 1];
+            }
+        }
+    }
+
+    /**
+     * @param image An image
+     * @return True if the table of the image can be held in a single array
+     */
+    public static boolean canHold(BaseImage image) {
+        return (long) (image.getHeight() + 1) * (image.getWidth() + 1) <= MAX_TABLE_LENGTH;
+    }
+
+    /**
+     * @return The width of the image the table was built for
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the image the table was built for
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The number of bytes the table occupies in memory
+     */
+    public long getMemoryBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    /**
+     * Calculates the brightness of the given region of the image, in constant time.
+     * The result is equal to the brightness of the region as if it was a standalone image.
+     * @param row The row coordinate of the top-left pixel of the region
+     * @param col The column coordinate of the top-left pixel of the region
+     * @param regionHeight The number of rows in the region
+     * @param regionWidth The number of columns in the region
+     * @return The brightness of the region, between 0 and 1
+     */
+    public double getRegionBrightness(int row, int col, int regionHeight, int regionWidth) {
+        assert row >= 0 && col >= 0 && regionHeight > 0 && regionWidth > 0 &&
+                row + regionHeight <= height && col + regionWidth <= width : "The region is out of bounds";
+
+        long grayscaleSum = getRegionGrayscaleSum(row, col, regionHeight, regionWidth);
+        return getBrightness(grayscaleSum, (long) regionHeight * regionWidth);
+    }
+
+    /**
+     * Calculates the sum of the scaled grayscale values of the given region of the image, in constant time.
+     * Sums of adjacent regions may be added together, as they are exact.
+     * @param row The row coordinate of the top-left pixel of the region
+     * @param col The column coordinate of the top-left pixel of the region
+     * @param regionHeight The number of rows in the region
+     * @param regionWidth The number of columns in the region
+     * @return The sum of the scaled grayscale values of the region
+     */
+    public long getRegionGrayscaleSum(int row, int col, int regionHeight, int regionWidth) {
+        int topOffset = row * tableWidth;
+        int bottomOffset = (row + regionHeight) * tableWidth;
+        int right = col + regionWidth;
+        return table[bottomOffset + right] - table[bottomOffset + col]
+                - table[topOffset + right] + table[topOffset + col];
+    }
+
+    /**
+     * Calculates the brightness of a region from the sum of its scaled grayscale values.
+     * @param grayscaleSum The sum of the scaled grayscale values of the region
+     * @param pixels The number of pixels in the region
+     * @return The brightness of the region, between 0 and 1
+     */
+    public static double getBrightness(long grayscaleSum, long pixels) {
+        return BaseImage.getBrightness(grayscaleSum, pixels);
+    }
+}
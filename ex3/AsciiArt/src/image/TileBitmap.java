@@ -0,0 +1,110 @@
+package image;
+
+import java.util.Arrays;
+
+/**
+ * Thresholds square tiles of an image to small bitmaps, for matching the shape of a tile
+ * (rather than only its brightness) against the shapes of glyphs.
+ * The bitmap is stored as a bitset, row after row, a set bit marking a bright pixel.
+ * @author Nimrod M.
+ */
+public class TileBitmap {
+
+    /**
+     * Constructs a new TileBitmap object.
+     * Per this implementation, the constructor is not used
+     * and no object of this class differs from another.
+     */
+    public TileBitmap() {}
+
+    /**
+     * @param bitmapDimension The dimension (both width and height) of the bitmap
+     * @return The number of longs needed for the bitset of a bitmap of the given dimension
+     */
+    public static int getBitsetLength(int bitmapDimension) {
+        return Math.ceilDiv(bitmapDimension * bitmapDimension, Long.SIZE);
+    }
+
+    /**
+     * Samples the given tile at the centers of the bitmap's cells (repeating pixels of tiles smaller
+     * than the bitmap), and thresholds the samples at their mean, so the bitmap captures the
+     * tile's shape regardless of its overall brightness. Each pixel is read once, into the given samples,
+     * and the coordinates of the samples are stepped without a division per cell.
+     * @param image The image of the tile
+     * @param row The row coordinate of the top-left pixel of the tile
+     * @param col The column coordinate of the top-left pixel of the tile
+     * @param tileDimension The dimension (both width and height) of the tile
+     * @param bitmapDimension The dimension (both width and height) of the bitmap
+     * @param samples The array to read the samples to, of at least bitmapDimension^2 values, reusable across tiles
+     * @param bits The bitset to write the bitmap to, of the length given by getBitsetLength
+     * @return The contrast of the tile - the difference between its brightest and darkest samples,
+     *         between 0 and 1. The shape of a tile of low contrast is mostly noise.
+     */
+    public static double threshold(BaseImage image, int row, int col, int tileDimension,
+                                   int bitmapDimension, int[] samples, long[] bits) {
+        int cells = bitmapDimension * bitmapDimension;
+        long samplesSum = 0;
+        int minSample = Integer.MAX_VALUE;
+        int maxSample = Integer.MIN_VALUE;
+        // The center of cell i is at (2i + 1) * tileDimension / (2 * bitmapDimension), rounded down.
+        // It is stepped by the quotient and remainder of 2 * tileDimension / (2 * bitmapDimension).
+        int divisor = 2 * bitmapDimension;
+        int stepQuotient = (2 * tileDimension) / divisor;
+        int stepRemainder = (2 * tileDimension) % divisor;
+        int firstOffset = tileDimension / divisor;
+        int firstRemainder = tileDimension % divisor;
+
+        // Tiles smaller than the bitmap repeat their pixels in consecutive cells, which are read only once
+        int sampleRow = row + firstOffset;
+        int rowRemainder = firstRemainder;
+        int previousSampleRow = -1;
+        long rowSamplesSum = 0;
+        for (int cellRow = 0; cellRow < bitmapDimension; cellRow++) {
+            int rowStart = cellRow * bitmapDimension;
+            if (sampleRow == previousSampleRow) {
+                System.arraycopy(samples, rowStart - bitmapDimension, samples, rowStart, bitmapDimension);
+            } else {
+                rowSamplesSum = 0;
+                int sampleCol = col + firstOffset;
+                int colRemainder = firstRemainder;
+                int previousSampleCol = -1;
+                int sample = 0;
+                for (int cellCol = 0; cellCol < bitmapDimension; cellCol++) {
+                    if (sampleCol != previousSampleCol) {
+                        sample = BaseImage.getScaledGrayscale(image.getRGB(sampleRow, sampleCol));
+                        minSample = Math.min(minSample, sample);
+                        maxSample = Math.max(maxSample, sample);
+                        previousSampleCol = sampleCol;
+                    }
+                    samples[rowStart + cellCol] = sample;
+                    rowSamplesSum += sample;
+
+                    sampleCol += stepQuotient;
+                    colRemainder += stepRemainder;
+                    if (colRemainder >= divisor) {
+                        sampleCol++;
+                        colRemainder -= divisor;
+                    }
+                }
+                previousSampleRow = sampleRow;
+            }
+            samplesSum += rowSamplesSum;
+
+            sampleRow += stepQuotient;
+            rowRemainder += stepRemainder;
+            if (rowRemainder >= divisor) {
+                sampleRow++;
+                rowRemainder -= divisor;
+            }
+        }
+
+        // Comparing each sample multiplied by the number of samples to their sum, avoiding the division.
+        // The bit is the sign of their difference, as a branch per cell is mispredicted about half the time.
+        Arrays.fill(bits, 0);
+        for (int cell = 0; cell < cells; cell++) {
+            long isBright = (samplesSum - (long) samples[cell] * cells) >>> (Long.SIZE - 1);
+            bits[cell >>> 6] |= isBright << (cell & (Long.SIZE - 1));
+        }
+        return (double) (maxSample - minSample) / BaseImage.MAX_SCALED_GRAYSCALE;
+    }
+}
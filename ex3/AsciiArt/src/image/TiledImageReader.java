@@ -0,0 +1,814 @@
+package image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads the brightness of the sub images of an image file without holding the whole image at once,
+ * for images too large to be held in memory. The image is decoded once, top to bottom, and its rows are
+ * collected into bands - the rows of a single row of sub images - each discarded once its sub images
+ * are summed, so the memory is bounded by the band's height times the image's width.
+ * Formats read at random are decoded a region of rows at a time instead, while interlaced and progressive
+ * images (whose rows are not decoded in order) and formats of other readers are decoded whole.
+ * The brightness is identical to the brightness of the sub images of the fully decoded image,
+ * unless an accuracy tolerance is set: then, when the sub images are large, only a subsample of their
+ * pixels is decoded, and the sampling error of the brightness is estimated and reported.
+ * @author Nimrod M.
+ */
+public class TiledImageReader implements AutoCloseable {
+
+    /**
+     * The accuracy tolerance in which every pixel is decoded, and the brightness is exact.
+     */
+    public static final double EXACT_TOLERANCE = 0;
+    private static final int NO_SUBSAMPLING = 1;
+    // The largest possible standard deviation of brightness values between 0 and 1
+    private static final double MAX_BRIGHTNESS_DEVIATION = 0.5;
+    // The number of decoded rows held by the destination of a streamed decoding
+    private static final int RING_ROWS = 16;
+    // The formats whose readers write every row through the destination's raster, and report it once written
+    private static final Set<String> STREAMED_FORMATS = Set.of("png", "jpeg");
+    // The number of pixels decoded at once by a region of a format read at random
+    private static final int REGION_PIXELS = 1 << 22;
+
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final BandedImage bandedImage;
+    private double accuracyTolerance = EXACT_TOLERANCE;
+    private int subsampling = NO_SUBSAMPLING;
+    private double maxSamplingError = 0;
+    private double meanSamplingError = 0;
+
+    /**
+     * Constructs a new TiledImageReader of the given file, reading only the image's header.
+     * @param filename The name of the file to be read the image from
+     * @throws IOException If the file is not found, or is not a readable image
+     */
+    public TiledImageReader(String filename) throws IOException {
+        input = ImageIO.createImageInputStream(new File(filename));
+        if (null == input) {
+            throw new IOException("Cannot read file: " + filename);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("Unknown image format: " + filename);
+        }
+        reader = readers.next();
+        reader.setInput(input, true, true);
+        bandedImage = new BandedImage(reader.getWidth(0), reader.getHeight(0));
+    }
+
+    /**
+     * @return The width of the image
+     */
+    public int getWidth() {
+        return bandedImage.getWidth();
+    }
+
+    /**
+     * @return The height of the image
+     */
+    public int getHeight() {
+        return bandedImage.getHeight();
+    }
+
+    /**
+     * Sets the accuracy tolerance of the brightness. With a positive tolerance, the sub images are decoded
+     * with the largest subsampling (the same in both axes) for which the standard error of the brightness
+     * of a sub image is within the tolerance, even for the most varied sub image.
+     * @param tolerance The tolerated standard error of the brightness of each sub image,
+     *                  EXACT_TOLERANCE for decoding every pixel
+     */
+    public void setAccuracyTolerance(double tolerance) {
+        assert tolerance >= EXACT_TOLERANCE;
+        accuracyTolerance = tolerance;
+    }
+
+    /**
+     * @return The subsampling of the last read, in each axis - 1 if every pixel was decoded
+     */
+    public int getSubsampling() {
+        return subsampling;
+    }
+
+    /**
+     * @return The largest estimated standard error of the brightness of a sub image in the last read
+     */
+    public double getMaxSamplingError() {
+        return maxSamplingError;
+    }
+
+    /**
+     * @return The mean estimated standard error of the brightness of the sub images in the last read
+     */
+    public double getMeanSamplingError() {
+        return meanSamplingError;
+    }
+
+    /**
+     * Reads the brightness of every sub image of the image, padded according to the given padding mode,
+     * decoding the image once (subsampled, if allowed by the accuracy tolerance) and holding
+     * a single band of it at a time.
+     * @param resolution The number of sub images in each row
+     * @param paddingMode The way the image is padded before dividing it to sub images
+     * @return The brightness grid, a row of brightness values for each row of sub images
+     * @throws IOException If decoding the image failed
+     */
+    public double[][] readBrightnessGrid(int resolution, PaddingMode paddingMode) throws IOException {
+        PaddedImage paddedImage = createPaddedImage(resolution, paddingMode);
+        subsampling = getSubsampling(paddedImage.getSubImageDimension(resolution));
+
+        BandCollector bandCollector = new BandCollector(paddedImage, resolution);
+        decodeRows(subsampling, bandCollector);
+        double[][] brightnessGrid = bandCollector.getBrightnessGrid();
+        meanSamplingError = bandCollector.getSamplingErrorSum() / ((long) brightnessGrid.length * resolution);
+        bandedImage.setBand(0, 0, NO_SUBSAMPLING, 0, new int[0]);
+        return brightnessGrid;
+    }
+
+    /**
+     * Checks whether the image, padded according to the given padding mode, divides to whole sub images
+     * in the given resolution (see PaddedImage.isEvenlyDivided). No pixel is decoded.
+     * @param resolution The number of sub images in each row
+     * @param paddingMode The way the image is padded before dividing it to sub images
+     * @return True if the sub images cover the whole padded image, false otherwise
+     */
+    public boolean isEvenlyDivided(int resolution, PaddingMode paddingMode) {
+        return createPaddedImage(resolution, paddingMode).isEvenlyDivided(resolution);
+    }
+
+    /**
+     * Closes the image file.
+     * @throws IOException If closing the file failed
+     */
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+
+    /**
+     * The padding only depends on the dimensions of the image, never on its pixels.
+     * @param resolution The number of sub images in each row
+     * @param paddingMode The way the image is padded before dividing it to sub images
+     * @return The image padded according to the padding mode (and resolution, if relevant)
+     */
+    private PaddedImage createPaddedImage(int resolution, PaddingMode paddingMode) {
+        return (PaddingMode.TILE_ALIGNED == paddingMode) ?
+                new PaddedImage(bandedImage, resolution) : new PaddedImage(bandedImage);
+    }
+
+    /**
+     * Decodes the image once, top to bottom, handing each (sampled) row to the consumer as soon as it is
+     * decoded. Formats read at random (or in tiles) are decoded a region of rows at a time.
+     * PNG and JPEG images, which may only be decoded from their top, are decoded at once into a destination
+     * holding only the last few rows, so the memory is bounded by the image's width. If the reader does not
+     * decode the rows in order (as for interlaced and progressive images), the decoding is abandoned,
+     * the consumer is restarted and the image is decoded whole instead, as are images of other formats.
+     * Images whose decoded rows exceed a single array are decoded in a few segments of rows,
+     * each decoded from the top of the file.
+     * @param rowsSubsampling The subsampling in each axis, 1 for decoding every pixel
+     * @param consumer The consumer of the decoded rows
+     * @throws IOException If decoding the image failed
+     */
+    void decodeRows(int rowsSubsampling, RowConsumer consumer) throws IOException {
+        consumer.restart();
+        if (reader.isRandomAccessEasy(0) || reader.isImageTiled(0)) {
+            decodeRegions(rowsSubsampling, consumer);
+            return;
+        }
+        if (!STREAMED_FORMATS.contains(reader.getFormatName().toLowerCase(Locale.ROOT))) {
+            decodeWhole(rowsSubsampling, consumer);
+            return;
+        }
+
+        ImageTypeSpecifier imageType = reader.getImageTypes(0).next();
+        int sampledWidth = Math.ceilDiv(getWidth(), rowsSubsampling);
+        int sampledHeight = Math.ceilDiv(getHeight(), rowsSubsampling);
+        BufferedImage ringImage = imageType.createBufferedImage(sampledWidth, RING_ROWS);
+        DataBuffer ringBuffer = ringImage.getRaster().getDataBuffer();
+        // The ring keeps the elements as ints, hence cannot hold floating point elements
+        if ((DataBuffer.TYPE_FLOAT == ringBuffer.getDataType()) ||
+                (DataBuffer.TYPE_DOUBLE == ringBuffer.getDataType())) {
+            decodeWhole(rowsSubsampling, consumer);
+            return;
+        }
+
+        // The elements of each segment are indexed by the reader as ints, hence are kept below 2^31
+        int segmentRows = Math.max(1, (Integer.MAX_VALUE - ringBuffer.getSize()) /
+                Math.ceilDiv(ringBuffer.getSize(), RING_ROWS));
+        for (int firstRow = 0; firstRow < sampledHeight; firstRow += segmentRows) {
+            int rows = Math.min(segmentRows, sampledHeight - firstRow);
+            if (!decodeSegment(rowsSubsampling, firstRow, rows, imageType, ringImage, consumer)) {
+                consumer.restart();
+                decodeWhole(rowsSubsampling, consumer);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Decodes the given (sampled) rows of the image into a destination of the ring's rows,
+     * handing each row to the consumer as soon as it is decoded.
+     * @param rowsSubsampling The subsampling in each axis
+     * @param firstRow The first sampled row of the segment
+     * @param rows The number of sampled rows in the segment
+     * @param imageType The type of the image decoded by the reader
+     * @param ringImage An image of the ring's rows, whose pixels are shared with the destination
+     * @param consumer The consumer of the decoded rows
+     * @return True if all the rows were decoded in order, false otherwise
+     * @throws IOException If decoding the image failed
+     */
+    private boolean decodeSegment(int rowsSubsampling, int firstRow, int rows, ImageTypeSpecifier imageType,
+                                  BufferedImage ringImage, RowConsumer consumer) throws IOException {
+        int sampledWidth = ringImage.getWidth();
+        // Each row of the destination is kept in the row of the ring image of the same index modulo its rows
+        WritableRaster destinationRaster = Raster.createWritableRaster(
+                imageType.getSampleModel(sampledWidth, rows),
+                new RingDataBuffer(ringImage.getRaster().getDataBuffer()), null);
+        BufferedImage destination = new BufferedImage(imageType.getColorModel(), destinationRaster,
+                imageType.getColorModel().isAlphaPremultiplied(), null);
+
+        int firstSourceRow = firstRow * rowsSubsampling;
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(0, firstSourceRow, getWidth(),
+                Math.min(getHeight(), (firstRow + rows) * rowsSubsampling) - firstSourceRow));
+        // The sampling grid starts at the first row and column of the image
+        param.setSourceSubsampling(rowsSubsampling, rowsSubsampling, 0, 0);
+        param.setDestination(destination);
+
+        RowListener rowListener = new RowListener(firstRow, ringImage, consumer);
+        reader.addIIOReadUpdateListener(rowListener);
+        try {
+            reader.read(0, param);
+        } finally {
+            reader.removeIIOReadUpdateListener(rowListener);
+        }
+        return rowListener.isInOrder() && (rows == rowListener.getDecodedRows());
+    }
+
+    /**
+     * Decodes the image a region of rows at a time, and hands its (sampled) rows to the consumer.
+     * Only for formats read at random, whose regions are decoded without decoding the rows above them.
+     * @param rowsSubsampling The subsampling in each axis
+     * @param consumer The consumer of the decoded rows
+     * @throws IOException If decoding the image failed
+     */
+    private void decodeRegions(int rowsSubsampling, RowConsumer consumer) throws IOException {
+        int sampledHeight = Math.ceilDiv(getHeight(), rowsSubsampling);
+        int regionRows = Math.max(1, REGION_PIXELS / Math.ceilDiv(getWidth(), rowsSubsampling));
+        int[] rowPixels = null;
+        for (int firstRow = 0; firstRow < sampledHeight; firstRow += regionRows) {
+            int firstSourceRow = firstRow * rowsSubsampling;
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, firstSourceRow, getWidth(),
+                    Math.min(getHeight(), (firstRow + regionRows) * rowsSubsampling) - firstSourceRow));
+            // The regions start on sampled rows, so the sampling grid starts at the first row of the image
+            param.setSourceSubsampling(rowsSubsampling, rowsSubsampling, 0, 0);
+            BufferedImage region = reader.read(0, param);
+            if (null == rowPixels) {
+                rowPixels = new int[region.getWidth()];
+            }
+            for (int row = 0; row < region.getHeight(); row++) {
+                region.getRGB(0, row, region.getWidth(), 1, rowPixels, 0, region.getWidth());
+                consumer.accept(firstRow + row, rowPixels);
+            }
+        }
+    }
+
+    /**
+     * Decodes the whole image at once, and hands its (sampled) rows to the consumer.
+     * @param rowsSubsampling The subsampling in each axis
+     * @param consumer The consumer of the decoded rows
+     * @throws IOException If decoding the image failed
+     */
+    private void decodeWhole(int rowsSubsampling, RowConsumer consumer) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(rowsSubsampling, rowsSubsampling, 0, 0);
+        BufferedImage image = reader.read(0, param);
+        int[] rowPixels = new int[image.getWidth()];
+        for (int row = 0; row < image.getHeight(); row++) {
+            image.getRGB(0, row, image.getWidth(), 1, rowPixels, 0, image.getWidth());
+            consumer.accept(row, rowPixels);
+        }
+    }
+
+    /**
+     * The standard error of the mean of n samples is at most MAX_BRIGHTNESS_DEVIATION / sqrt(n),
+     * so the sub image needs (MAX_BRIGHTNESS_DEVIATION / tolerance)^2 samples for any content.
+     * @param subImageDimension The dimension of each sub image
+     * @return The subsampling in each axis allowed by the accuracy tolerance
+     */
+    private int getSubsampling(int subImageDimension) {
+        if (accuracyTolerance <= EXACT_TOLERANCE) {
+            return NO_SUBSAMPLING;
+        }
+        int samplesPerAxis = (int) Math.ceil(MAX_BRIGHTNESS_DEVIATION / accuracyTolerance);
+        return Math.max(NO_SUBSAMPLING, subImageDimension / samplesPerAxis);
+    }
+
+    /**
+     * Consumes the rows of an image as they are decoded, top to bottom.
+     */
+    interface RowConsumer {
+
+        /**
+         * Called before the first row is decoded, and again if the decoding restarts from the top.
+         */
+        void restart();
+
+        /**
+         * @param row The index of the (sampled) row
+         * @param pixels The (sampled) pixels of the row, packed as ARGB - reused for the following rows
+         */
+        void accept(int row, int[] pixels);
+    }
+
+    /**
+     * A data buffer of any height, holding only the last rows written to it. Each element is kept
+     * in the element of the ring's buffer of the same index modulo the ring's size, so each row
+     * is kept in the row of the ring of the same index modulo the ring's rows.
+     */
+    private static class RingDataBuffer extends DataBuffer {
+
+        private final DataBuffer ringBuffer;
+        private final int ringSize;
+
+        /**
+         * @param ringBuffer The buffer of the ring's rows
+         */
+        RingDataBuffer(DataBuffer ringBuffer) {
+            super(ringBuffer.getDataType(), ringBuffer.getSize(), ringBuffer.getNumBanks());
+            this.ringBuffer = ringBuffer;
+            ringSize = ringBuffer.getSize();
+        }
+
+        /**
+         * @param bank The bank of the element
+         * @param i The index of the element
+         * @return The element
+         */
+        @Override
+        public int getElem(int bank, int i) {
+            return ringBuffer.getElem(bank, i % ringSize);
+        }
+
+        /**
+         * @param bank The bank of the element
+         * @param i The index of the element
+         * @param val The value of the element
+         */
+        @Override
+        public void setElem(int bank, int i, int val) {
+            ringBuffer.setElem(bank, i % ringSize, val);
+        }
+    }
+
+    /**
+     * Hands each row decoded into a ring destination to a row consumer, while the row is still in the ring.
+     * Aborts the decoding as soon as a row is decoded out of order.
+     */
+    private static class RowListener implements IIOReadUpdateListener {
+
+        private final int firstRow;
+        private final BufferedImage ringImage;
+        private final RowConsumer consumer;
+        private final int[] rowPixels;
+        private int decodedRows = 0;
+        private boolean inOrder = true;
+
+        /**
+         * @param firstRow The index of the first row of the destination, in the whole (sampled) image
+         * @param ringImage An image of the ring's rows, whose pixels are shared with the destination
+         * @param consumer The consumer of the decoded rows
+         */
+        RowListener(int firstRow, BufferedImage ringImage, RowConsumer consumer) {
+            this.firstRow = firstRow;
+            this.ringImage = ringImage;
+            this.consumer = consumer;
+            rowPixels = new int[ringImage.getWidth()];
+        }
+
+        /**
+         * @return True if the rows were decoded in order (so far), false otherwise
+         */
+        boolean isInOrder() {
+            return inOrder;
+        }
+
+        /**
+         * @return The number of rows decoded in order, and handed to the consumer
+         */
+        int getDecodedRows() {
+            return decodedRows;
+        }
+
+        /**
+         * Hands the updated rows to the consumer, if they are whole and follow the rows decoded before.
+         * Otherwise, aborts the decoding.
+         */
+        @Override
+        public void imageUpdate(ImageReader source, BufferedImage theImage, int minX, int minY,
+                                int width, int height, int periodX, int periodY, int[] bands) {
+            if (!inOrder) {
+                return;
+            }
+            if ((0 != minX) || (rowPixels.length != width) || (1 != periodX) || (1 != periodY) ||
+                    (decodedRows != minY) || (height > RING_ROWS)) {
+                inOrder = false;
+                source.abort();
+                return;
+            }
+            for (int row = minY; row < minY + height; row++) {
+                ringImage.getRGB(0, row % RING_ROWS, rowPixels.length, 1, rowPixels, 0, rowPixels.length);
+                consumer.accept(firstRow + row, rowPixels);
+            }
+            decodedRows += height;
+        }
+
+        /**
+         * Not used, the order of the rows is checked by their updates.
+         */
+        @Override
+        public void passStarted(ImageReader source, BufferedImage theImage, int pass, int minPass, int maxPass,
+                                int minX, int minY, int periodX, int periodY, int[] bands) { }
+
+        /**
+         * Not used, the order of the rows is checked by their updates.
+         */
+        @Override
+        public void passComplete(ImageReader source, BufferedImage theImage) { }
+
+        /**
+         * Not used, thumbnails are never read.
+         */
+        @Override
+        public void thumbnailPassStarted(ImageReader source, BufferedImage theThumbnail, int pass,
+                                         int minPass, int maxPass, int minX, int minY,
+                                         int periodX, int periodY, int[] bands) { }
+
+        /**
+         * Not used, thumbnails are never read.
+         */
+        @Override
+        public void thumbnailUpdate(ImageReader source, BufferedImage theThumbnail, int minX, int minY,
+                                    int width, int height, int periodX, int periodY, int[] bands) { }
+
+        /**
+         * Not used, thumbnails are never read.
+         */
+        @Override
+        public void thumbnailPassComplete(ImageReader source, BufferedImage theThumbnail) { }
+    }
+
+    /**
+     * Collects the decoded rows into bands, a band for each row of sub images, and sums the sub images
+     * of each band as soon as all its rows are decoded. With subsampling, the samples are taken on a grid
+     * starting at the image's first row and column, so a band starting between samples also holds
+     * the nearest preceding sample (the last sample of the previous band).
+     */
+    private class BandCollector implements RowConsumer {
+
+        private final PaddedImage paddedImage;
+        private final int resolution;
+        private final int subImageDimension;
+        private final long subImagePixels;
+        private final double[][] brightnessGrid;
+        // The pixels of the current band, reused for all the bands
+        private final int[] bandPixels;
+        private final int sampledWidth;
+        private int bandRow;
+        private double samplingErrorSum;
+
+        /**
+         * @param paddedImage The padded image, over the banded image
+         * @param resolution The number of sub images in each row
+         */
+        BandCollector(PaddedImage paddedImage, int resolution) {
+            this.paddedImage = paddedImage;
+            this.resolution = resolution;
+            subImageDimension = paddedImage.getSubImageDimension(resolution);
+            subImagePixels = (long) subImageDimension * subImageDimension;
+            brightnessGrid = new double[paddedImage.getSubImageRows(resolution)][resolution];
+            sampledWidth = Math.ceilDiv(getWidth(), subsampling);
+            bandPixels = new int[(Math.ceilDiv(subImageDimension, subsampling) + 1) * sampledWidth];
+        }
+
+        /**
+         * @return The brightness grid, a row of brightness values for each row of sub images
+         */
+        double[][] getBrightnessGrid() {
+            assert brightnessGrid.length == bandRow : "Not all the bands were decoded";
+            return brightnessGrid;
+        }
+
+        /**
+         * @return The sum of the estimated standard errors of the brightness of the sub images
+         */
+        double getSamplingErrorSum() {
+            return samplingErrorSum;
+        }
+
+        /**
+         * Restarts the collection from the first band, discarding the brightness summed so far.
+         */
+        @Override
+        public void restart() {
+            bandRow = 0;
+            maxSamplingError = 0;
+            samplingErrorSum = 0;
+            sumEmptyBands();
+        }
+
+        /**
+         * Copies the row to the band(s) holding it, and sums the band once it is complete.
+         * @param row The index of the (sampled) row
+         * @param pixels The (sampled) pixels of the row, packed as ARGB
+         */
+        @Override
+        public void accept(int row, int[] pixels) {
+            // A sample may belong to the end of one band and the start of the next
+            while ((bandRow < brightnessGrid.length) && (row >= getFirstSample(bandRow))) {
+                System.arraycopy(pixels, 0, bandPixels, (row - getFirstSample(bandRow)) * sampledWidth,
+                        sampledWidth);
+                if (row < getLastSample(bandRow) - 1) {
+                    return;
+                }
+                sumBand(bandRow);
+                bandRow++;
+                sumEmptyBands();
+            }
+        }
+
+        /**
+         * @param row A row of sub images
+         * @return The first row of the original image covered by the row of sub images
+         */
+        private int getFirstRow(int row) {
+            return Math.min(Math.max(row * subImageDimension - paddedImage.getRowPadding(), 0), getHeight());
+        }
+
+        /**
+         * @param row A row of sub images
+         * @return The last row (exclusive) of the original image covered by the row of sub images
+         */
+        private int getLastRow(int row) {
+            return Math.max(Math.min((row + 1) * subImageDimension - paddedImage.getRowPadding(), getHeight()),
+                    getFirstRow(row));
+        }
+
+        /**
+         * @param row A row of sub images
+         * @return The first sample held by the band of the row of sub images, at or before its first row
+         */
+        private int getFirstSample(int row) {
+            return getFirstRow(row) / subsampling;
+        }
+
+        /**
+         * @param row A row of sub images
+         * @return The last sample (exclusive) held by the band of the row of sub images
+         */
+        private int getLastSample(int row) {
+            return Math.ceilDiv(getLastRow(row), subsampling);
+        }
+
+        /**
+         * Sums the rows of sub images from the current one which cover no rows of the original image
+         * (the padding), until a row of sub images which does.
+         */
+        private void sumEmptyBands() {
+            while ((bandRow < brightnessGrid.length) && (getFirstRow(bandRow) == getLastRow(bandRow))) {
+                sumBand(bandRow);
+                bandRow++;
+            }
+        }
+
+        /**
+         * Sets the collected band as the band of the banded image, and sums its sub images.
+         * @param row The row of sub images of the band
+         */
+        private void sumBand(int row) {
+            int firstRow = getFirstRow(row);
+            int lastRow = getLastRow(row);
+            bandedImage.setBand(firstRow, lastRow - firstRow, subsampling, getFirstSample(row), bandPixels);
+
+            for (int col = 0; col < resolution; col++) {
+                long grayscaleSum = paddedImage.getRegionGrayscaleSum(row * subImageDimension,
+                        col * subImageDimension, subImageDimension, subImageDimension);
+                brightnessGrid[row][col] = BaseImage.getBrightness(grayscaleSum, subImagePixels);
+
+                if (NO_SUBSAMPLING == subsampling) {
+                    continue;
+                }
+                // Only the part of the sub image overlapping the image is sampled, the padding is exact
+                int firstCol = Math.max(col * subImageDimension - paddedImage.getColPadding(), 0);
+                int lastCol = Math.min((col + 1) * subImageDimension - paddedImage.getColPadding(), getWidth());
+                if ((firstRow < lastRow) && (firstCol < lastCol)) {
+                    double samplingError = Math.sqrt(bandedImage.getRegionSamplingVariance(
+                            firstRow, firstCol, lastRow - firstRow, lastCol - firstCol)) /
+                            (subImagePixels * BaseImage.MAX_SCALED_GRAYSCALE);
+                    maxSamplingError = Math.max(maxSamplingError, samplingError);
+                    samplingErrorSum += samplingError;
+                }
+            }
+        }
+    }
+
+    /**
+     * An image of which only a single band of rows is held in memory at a time.
+     * Only the pixels of the current band may be accessed. The band may be subsampled,
+     * holding only every n-th pixel of every n-th row (of the whole image), in which case each pixel
+     * is taken from the nearest preceding sample, and region sums are estimated from the samples within them.
+     */
+    private static class BandedImage extends BaseImage {
+
+        private static final int SAMPLES_SUM = 0;
+        private static final int SAMPLES_SQUARES_SUM = 1;
+        private static final int SAMPLES_COUNT = 2;
+
+        private final int width;
+        private final int height;
+        private int bandFirstRow = 0;
+        private int bandRows = 0;
+        private int bandSubsampling = NO_SUBSAMPLING;
+        // The index of the first sampled row held by the band, in the whole image's sampled rows
+        private int bandFirstSample = 0;
+        private int bandWidth;
+        private int[] bandPixels = new int[0];
+
+        /**
+         * @param width The width of the whole image
+         * @param height The height of the whole image
+         */
+        BandedImage(int width, int height) {
+            this.width = width;
+            this.height = height;
+            bandWidth = width;
+        }
+
+        /**
+         * @param firstRow The first row of the band, in the whole image
+         * @param rows The number of rows in the band
+         * @param subsampling The subsampling of the band in each axis, 1 if every pixel is held
+         * @param firstSample The index of the first sampled row held, at or before the first row
+         * @param pixels The (sampled) pixels of the band, packed as ARGB, row after row
+         *               (possibly followed by unused pixels)
+         */
+        void setBand(int firstRow, int rows, int subsampling, int firstSample, int[] pixels) {
+            assert pixels.length >= (Math.ceilDiv(firstRow + rows, subsampling) - firstSample) *
+                    Math.ceilDiv(width, subsampling) : "The pixels do not match the band";
+
+            bandFirstRow = firstRow;
+            bandRows = rows;
+            bandSubsampling = subsampling;
+            bandFirstSample = firstSample;
+            bandWidth = Math.ceilDiv(width, subsampling);
+            bandPixels = pixels;
+        }
+
+        /**
+         * @return The width of the whole image
+         */
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * @return The height of the whole image
+         */
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @param x The row coordinate of the pixel, within the current band
+         * @param y The column coordinate of the pixel
+         * @return The pixel color values at the given coordinates
+         */
+        @Override
+        public Color getPixel(int x, int y) {
+            return new Color(getRGB(x, y));
+        }
+
+        /**
+         * @param x The row coordinate of the pixel, within the current band
+         * @param y The column coordinate of the pixel
+         * @return The pixel color values at the given coordinates, packed as ARGB
+         */
+        @Override
+        public int getRGB(int x, int y) {
+            assert (x >= bandFirstRow) && (x < bandFirstRow + bandRows) : "The pixel is out of the band";
+            return bandPixels[(x / bandSubsampling - bandFirstSample) * bandWidth + y / bandSubsampling];
+        }
+
+        /**
+         * @param row The row coordinate of the top-left pixel of the region, within the current band
+         * @param col The column coordinate of the top-left pixel of the region
+         * @param regionHeight The number of rows in the region
+         * @param regionWidth The number of columns in the region
+         * @return The sum of the scaled grayscale values of the region
+         */
+        @Override
+        long getRegionGrayscaleSum(int row, int col, int regionHeight, int regionWidth) {
+            assert (row >= bandFirstRow) && (row + regionHeight <= bandFirstRow + bandRows) :
+                    "The region is out of the band";
+
+            if (NO_SUBSAMPLING == bandSubsampling) {
+                long grayscaleSum = 0;
+                for (int currentRow = row - bandFirstSample; currentRow < row - bandFirstSample + regionHeight;
+                     currentRow++) {
+                    int rowStart = currentRow * width + col;
+                    for (int i = rowStart; i < rowStart + regionWidth; i++) {
+                        grayscaleSum += getScaledGrayscale(bandPixels[i]);
+                    }
+                }
+                return grayscaleSum;
+            }
+
+            // The mean of the samples, scaled to the number of pixels in the region
+            double[] samples = sampleRegion(row, col, regionHeight, regionWidth);
+            return Math.round(samples[SAMPLES_SUM] / samples[SAMPLES_COUNT] * regionHeight * regionWidth);
+        }
+
+        /**
+         * Estimates the variance of the estimated grayscale sum of the given region, from the variance of
+         * its samples (with the correction for sampling a finite number of pixels without replacement).
+         * @param row The row coordinate of the top-left pixel of the region, within the current band
+         * @param col The column coordinate of the top-left pixel of the region
+         * @param regionHeight The number of rows in the region
+         * @param regionWidth The number of columns in the region
+         * @return The estimated variance of the region's grayscale sum, 0 if the band is not subsampled
+         */
+        double getRegionSamplingVariance(int row, int col, int regionHeight, int regionWidth) {
+            if (NO_SUBSAMPLING == bandSubsampling) {
+                return 0;
+            }
+
+            double[] samples = sampleRegion(row, col, regionHeight, regionWidth);
+            double count = samples[SAMPLES_COUNT];
+            double regionPixels = (double) regionHeight * regionWidth;
+            // A single sample tells nothing of the variance, so the largest possible variance is assumed
+            double sampleVariance = (count < 2) ?
+                    Math.pow(MAX_SCALED_GRAYSCALE * MAX_BRIGHTNESS_DEVIATION, 2) :
+                    (samples[SAMPLES_SQUARES_SUM] - samples[SAMPLES_SUM] * samples[SAMPLES_SUM] / count) /
+                            (count - 1);
+            return regionPixels * regionPixels * Math.max(sampleVariance, 0) / count *
+                    (1 - count / regionPixels);
+        }
+
+        /**
+         * Sums the samples of the given region, and their squares. A region narrower than the
+         * subsampling may contain no sample, in which case the nearest preceding sample is used.
+         * @param row The row coordinate of the top-left pixel of the region, within the current band
+         * @param col The column coordinate of the top-left pixel of the region
+         * @param regionHeight The number of rows in the region
+         * @param regionWidth The number of columns in the region
+         * @return The sum of the samples' scaled grayscale values, the sum of their squares
+         *         and their count, indexed by SAMPLES_SUM, SAMPLES_SQUARES_SUM and SAMPLES_COUNT
+         */
+        private double[] sampleRegion(int row, int col, int regionHeight, int regionWidth) {
+            int firstSampleRow = Math.ceilDiv(row, bandSubsampling);
+            int lastSampleRow = Math.ceilDiv(row + regionHeight, bandSubsampling);
+            int firstSampleCol = Math.ceilDiv(col, bandSubsampling);
+            int lastSampleCol = Math.ceilDiv(col + regionWidth, bandSubsampling);
+            if (firstSampleRow >= lastSampleRow) {
+                firstSampleRow = row / bandSubsampling;
+                lastSampleRow = firstSampleRow + 1;
+            }
+            if (firstSampleCol >= lastSampleCol) {
+                firstSampleCol = col / bandSubsampling;
+                lastSampleCol = firstSampleCol + 1;
+            }
+
+            double[] samples = new double[SAMPLES_COUNT + 1];
+            for (int sampleRow = firstSampleRow; sampleRow < lastSampleRow; sampleRow++) {
+                for (int sampleCol = firstSampleCol; sampleCol < lastSampleCol; sampleCol++) {
+                    double grayscale = getScaledGrayscale(
+                            bandPixels[(sampleRow - bandFirstSample) * bandWidth + sampleCol]);
+                    samples[SAMPLES_SUM] += grayscale;
+                    samples[SAMPLES_SQUARES_SUM] += grayscale * grayscale;
+                }
+            }
+            samples[SAMPLES_COUNT] = (double) (lastSampleRow - firstSampleRow) * (lastSampleCol - firstSampleCol);
+            return samples;
+        }
+    }
+}
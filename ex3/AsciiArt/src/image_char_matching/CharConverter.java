@@ -2,6 +2,7 @@ package image_char_matching;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.nio.file.Paths;
 
 /**
  * Inspired by, and partly copied from
@@ -20,13 +21,40 @@ public class CharConverter {
      * (added primarily because the presubmit check failed without it).
      */
     public static final int DEFAULT_PIXEL_RESOLUTION = 16;
+    /**
+     * The path of the file the rendered glyphs are persisted to, between runs,
+     * in the user's cache directory (rather than the working directory).
+     */
+    public static final String GLYPH_CACHE_PATH =
+            Paths.get(System.getProperty("user.home"), ".cache", "ascii_art", "glyph_cache").toString();
+
+    private static volatile GlyphCache glyphCache = new GlyphCache(GLYPH_CACHE_PATH);
 
     /**
      * Renders a given character, according to how it looks in the font specified in the
      * constructor, to a square black&white image (2D array of booleans),
      * whose dimension in pixels is specified.
+     * Each character is rendered once, and then retrieved from the glyph cache.
      */
     public static boolean[][] convertToBoolArray(char c) {
+        return glyphCache.get(c, FONT_NAME, DEFAULT_PIXEL_RESOLUTION, () -> renderBoolArray(c));
+    }
+
+    /**
+     * Replaces the glyph cache with an empty one, kept only in memory, so every character is rendered
+     * again (once) by the following conversions. Used for measuring the conversions over a cold cache,
+     * without touching the persisted glyphs.
+     */
+    public static void resetGlyphCache() {
+        glyphCache = new GlyphCache();
+    }
+
+    /**
+     * Renders a given character to a square black&white image (2D array of booleans).
+     * @param c The character to be rendered
+     * @return The rendered character
+     */
+    private static boolean[][] renderBoolArray(char c) {
         BufferedImage img = getBufferedImage(c, FONT_NAME, DEFAULT_PIXEL_RESOLUTION);
         boolean[][] matrix = new boolean[DEFAULT_PIXEL_RESOLUTION][DEFAULT_PIXEL_RESOLUTION];
         for(int y = 0 ; y < DEFAULT_PIXEL_RESOLUTION ; y++) {
@@ -0,0 +1,249 @@
+package image_char_matching;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of the charset of a SubImgCharMatcher, classifying brightness values exactly
+ * as the matcher did when the snapshot was taken. Holds the brightness of each character and the
+ * min/max brightness the charset is stretched over, together with the tables derived from them.
+ * Being immutable, it may be shared by any number of threads without synchronization,
+ * and two snapshots are equal if and only if they classify every brightness value alike.
+ * @author Nimrod M.
+ */
+public final class CharMatchingTable {
+
+    private static final char NO_MATCH_CHAR = ' ';
+    private static final int NO_MATCH_INDEX = -1;
+    // The number of equal ranges the brightness values are quantized to, for the lookup table
+    private static final int LOOKUP_BUCKETS = 4096;
+    private static final int MIXED_BUCKET = -1;
+
+    // The charset in ascending order, with the (unnormalized) brightness of each char
+    private final char[] charset;
+    private final double[] charBrightness;
+    private final double minBrightness;
+    private final double maxBrightness;
+
+    // The distinct normalized brightness values in ascending order, with the (lowest) matching chars
+    private final double[] sortedBrightness;
+    private final char[] sortedChars;
+    // Maps each brightness bucket to the index of the closest char for the whole bucket,
+    // or MIXED_BUCKET if different brightness values within the bucket have different closest chars
+    private final int[] bucketToIndex = new int[LOOKUP_BUCKETS];
+
+    /**
+     * Constructs a new CharMatchingTable, normalizing the brightness of every character
+     * by a linear stretch from the given min/max brightness to the whole range.
+     * @param charToBrightness The (unnormalized) brightness of each character of the charset
+     * @param minBrightness The brightness stretched to 0
+     * @param maxBrightness The brightness stretched to 1
+     */
+    CharMatchingTable(TreeMap<Character, Double> charToBrightness, double minBrightness, double maxBrightness) {
+        this.minBrightness = minBrightness;
+        this.maxBrightness = maxBrightness;
+        charset = new char[charToBrightness.size()];
+        charBrightness = new double[charToBrightness.size()];
+        int i = 0;
+        for (Map.Entry<Character, Double> entry : charToBrightness.entrySet()) {
+            charset[i] = entry.getKey();
+            charBrightness[i] = entry.getValue();
+            i++;
+        }
+
+        // The charset is ordered by char, and the sort is stable, so chars with equal brightness
+        // remain in ascending order and only the lowest of them is kept
+        Integer[] order = new Integer[charset.length];
+        double[] normalizedBrightness = new double[charset.length];
+        for (int j = 0; j < charset.length; j++) {
+            order[j] = j;
+            normalizedBrightness[j] = getLinearStretch(minBrightness, maxBrightness, charBrightness[j]);
+        }
+        Arrays.sort(order, Comparator.comparingDouble(j -> normalizedBrightness[j]));
+
+        double[] newSortedBrightness = new double[charset.length];
+        char[] newSortedChars = new char[charset.length];
+        int distinctValues = 0;
+        for (int j : order) {
+            double brightness = normalizedBrightness[j];
+            // NaN values are never closer than any other value, hence never matched
+            if (Double.isNaN(brightness) ||
+                    ((distinctValues > 0) && (newSortedBrightness[distinctValues - 1] == brightness))) {
+                continue;
+            }
+            newSortedBrightness[distinctValues] = brightness;
+            newSortedChars[distinctValues] = charset[j];
+            distinctValues++;
+        }
+        sortedBrightness = Arrays.copyOf(newSortedBrightness, distinctValues);
+        sortedChars = Arrays.copyOf(newSortedChars, distinctValues);
+
+        // The closest index is monotonic in the brightness, so if both ends of a bucket
+        // have the same closest index, so does every brightness value in between
+        for (int bucket = 0; bucket < LOOKUP_BUCKETS; bucket++) {
+            double bucketStart = (double) bucket / LOOKUP_BUCKETS;
+            double bucketEnd = Math.nextDown((double) (bucket + 1) / LOOKUP_BUCKETS);
+            int startIndex = findClosestIndex(bucketStart);
+            int endIndex = findClosestIndex(bucketEnd);
+            bucketToIndex[bucket] =
+                    ((startIndex == endIndex) && (NO_MATCH_INDEX != startIndex)) ? startIndex : MIXED_BUCKET;
+        }
+    }
+
+    /**
+     * @return The charset, in ascending order
+     */
+    public char[] getCharset() {
+        return charset.clone();
+    }
+
+    /**
+     * @param c The character to be checked
+     * @return True if the character is in the charset, false otherwise
+     */
+    public boolean inCharset(char c) {
+        return Arrays.binarySearch(charset, c) >= 0;
+    }
+
+    /**
+     * Classifies the given brightness value to the closest character in the charset.
+     * If several characters are equally close, the lowest of them is returned.
+     * Most brightness values are classified in constant time through the lookup table,
+     * the rest are classified by a binary search over the sorted brightness values.
+     * @param brightness The brightness value to be classified
+     * @return The character with the closest brightness to the given brightness
+     */
+    public char getCharByImageBrightness(double brightness) {
+        if ((brightness >= 0) && (brightness < 1)) {
+            int index = bucketToIndex[(int) (brightness * LOOKUP_BUCKETS)];
+            if (MIXED_BUCKET != index) {
+                return sortedChars[index];
+            }
+        }
+
+        int index = findClosestIndex(brightness);
+        if (NO_MATCH_INDEX == index) {
+            return NO_MATCH_CHAR;
+        }
+        return sortedChars[index];
+    }
+
+    /**
+     * @return A new map of the (unnormalized) brightness of each character of the charset
+     */
+    TreeMap<Character, Double> getCharToBrightness() {
+        TreeMap<Character, Double> charToBrightness = new TreeMap<>();
+        for (int i = 0; i < charset.length; i++) {
+            charToBrightness.put(charset[i], charBrightness[i]);
+        }
+        return charToBrightness;
+    }
+
+    /**
+     * @return The brightness stretched to 0
+     */
+    double getMinBrightness() {
+        return minBrightness;
+    }
+
+    /**
+     * @return The brightness stretched to 1
+     */
+    double getMaxBrightness() {
+        return maxBrightness;
+    }
+
+    /**
+     * The derived tables are determined by the charset, its brightness and the min/max brightness,
+     * hence only those are compared.
+     * @param other The object to compare to
+     * @return True if the other object is a table of the same charset, brightness and min/max brightness
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CharMatchingTable otherTable)) {
+            return false;
+        }
+        return (0 == Double.compare(minBrightness, otherTable.minBrightness)) &&
+                (0 == Double.compare(maxBrightness, otherTable.maxBrightness)) &&
+                Arrays.equals(charset, otherTable.charset) &&
+                Arrays.equals(charBrightness, otherTable.charBrightness);
+    }
+
+    /**
+     * @return The hash code of the charset, its brightness and the min/max brightness
+     */
+    @Override
+    public int hashCode() {
+        int hash = Arrays.hashCode(charset);
+        hash = 31 * hash + Arrays.hashCode(charBrightness);
+        hash = 31 * hash + Double.hashCode(minBrightness);
+        return 31 * hash + Double.hashCode(maxBrightness);
+    }
+
+    /**
+     * Finds the closest brightness value to the given brightness by a binary search.
+     * If several values are equally close, the one of the lowest char is chosen.
+     * @param brightness The brightness value to be classified
+     * @return The index of the closest brightness value, or NO_MATCH_INDEX if there is none
+     */
+    private int findClosestIndex(double brightness) {
+        int insertionIndex = Arrays.binarySearch(sortedBrightness, brightness);
+        if (insertionIndex >= 0) {
+            return insertionIndex;
+        }
+        insertionIndex = -insertionIndex - 1;
+
+        int closestIndex = NO_MATCH_INDEX;
+        double minimalDiff = 2;
+        // Only the values surrounding the insertion index may be the closest
+        for (int i = Math.max(0, insertionIndex - 1);
+             i <= Math.min(sortedBrightness.length - 1, insertionIndex); i++) {
+            double diff = Math.abs(sortedBrightness[i] - brightness);
+            if (diff < minimalDiff) {
+                minimalDiff = diff;
+                closestIndex = i;
+            }
+        }
+        if (NO_MATCH_INDEX == closestIndex) {
+            return NO_MATCH_INDEX;
+        }
+
+        // The difference grows (weakly) further away from the brightness, so values with
+        // a difference equal to the minimal one are adjacent, and the lowest char among them wins
+        int firstTiedIndex = closestIndex;
+        while ((firstTiedIndex > 0) &&
+                (Math.abs(sortedBrightness[firstTiedIndex - 1] - brightness) == minimalDiff)) {
+            firstTiedIndex--;
+        }
+        int lastTiedIndex = closestIndex;
+        while ((lastTiedIndex < sortedBrightness.length - 1) &&
+                (Math.abs(sortedBrightness[lastTiedIndex + 1] - brightness) == minimalDiff)) {
+            lastTiedIndex++;
+        }
+        for (int i = firstTiedIndex; i <= lastTiedIndex; i++) {
+            if (sortedChars[i] < sortedChars[closestIndex]) {
+                closestIndex = i;
+            }
+        }
+        return closestIndex;
+    }
+
+    /**
+     * Calculates the linear stretching of the given brightness value.
+     * @param minBrightness The minimum brightness value
+     * @param maxBrightness The maximum brightness value
+     * @param brightness The brightness value to be normalized
+     * @return The normalized brightness value
+     */
+    private static double getLinearStretch(double minBrightness, double maxBrightness, double brightness) {
+        // There is an assumption here that maxBrightness > minBrightness,
+        // hence that they are not equal and the denominator is not 0.
+        return (brightness - minBrightness) / (maxBrightness - minBrightness);
+    }
+}
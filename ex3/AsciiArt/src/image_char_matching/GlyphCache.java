@@ -0,0 +1,253 @@
+package image_char_matching;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * A cache of rendered glyphs (the binary images of characters), keyed by the character,
+ * the font name and the pixel resolution of the rendering.
+ * The cache is kept in memory and persisted to a file, so glyphs rendered in previous runs
+ * are loaded on startup and are never rendered again.
+ * @author Nimrod M.
+ */
+class GlyphCache {
+
+    // Identifies the file format, so files of other formats (or versions) are not misread
+    private static final int FILE_MAGIC = 0x47_4C_59_31;
+    // Guards against huge allocations when reading a corrupted file
+    private static final int MAX_PIXEL_RESOLUTION = 1024;
+    // Guards against reading a huge file into memory, a larger file is rotated rather than read in full
+    private static final int MAX_FILE_SIZE = 64 * 1024 * 1024;
+    private static final String FILE_MODE = "rw";
+    private static final String ROTATED_FILE_SUFFIX = ".old";
+
+    private final Map<String, boolean[][]> glyphs = new ConcurrentHashMap<>();
+    // Null for a cache kept only in memory
+    private final File cacheFile;
+
+    /**
+     * Constructs a new, empty, GlyphCache kept only in memory, never persisting its glyphs.
+     */
+    GlyphCache() {
+        cacheFile = null;
+    }
+
+    /**
+     * Constructs a new GlyphCache, loading the glyphs persisted in the given file (if it exists).
+     * @param cacheFilePath The path of the file the glyphs are persisted to
+     */
+    GlyphCache(String cacheFilePath) {
+        cacheFile = new File(cacheFilePath);
+        load();
+    }
+
+    /**
+     * Retrieves the glyph of the given character, rendering it only if it is not in the cache.
+     * @param c The character of the glyph
+     * @param fontName The name of the font the glyph is rendered in
+     * @param pixelResolution The dimension in pixels of the (square) glyph
+     * @param renderer Renders the glyph, if it is not in the cache
+     * @return The glyph, a copy which may be modified by the caller
+     */
+    boolean[][] get(char c, String fontName, int pixelResolution, Supplier<boolean[][]> renderer) {
+        String key = getKey(c, fontName, pixelResolution);
+        boolean[][] glyph = glyphs.get(key);
+        if (null == glyph) {
+            glyph = renderer.get();
+            // Only the first of concurrent renderings of the same glyph is cached and persisted
+            if ((null == glyphs.putIfAbsent(key, glyph)) && (null != cacheFile)) {
+                persist(c, fontName, glyph);
+            }
+        }
+        return copyGlyph(glyph);
+    }
+
+    /**
+     * Loads the glyphs persisted in the cache file. If the file is partially corrupted,
+     * the glyphs preceding the corruption are loaded and the file is truncated after them,
+     * so glyphs persisted later are appended to readable records (an unknown file is emptied).
+     * A file exceeding the maximal size is not corrupted, just only partially read - its first records
+     * are loaded, and it is then rotated aside, so glyphs persisted later start a new file.
+     * The file is locked while it is read, so records appended by other processes are never read halfway.
+     */
+    private void load() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+
+        boolean oversized;
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, FILE_MODE)) {
+            // Released as the file is closed
+            file.getChannel().lock();
+            oversized = file.length() > MAX_FILE_SIZE;
+            byte[] content = new byte[(int) Math.min(file.length(), MAX_FILE_SIZE)];
+            file.readFully(content);
+            long validLength = readGlyphs(content);
+            // The content of an oversized file ends in the middle of a record, which is not a corruption
+            if (!oversized && (validLength < file.length())) {
+                Logger.getGlobal().warning(String.format("Discarding corrupted glyph cache records of \"%s\"",
+                        cacheFile));
+                file.setLength(validLength);
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to read glyph cache \"%s\"", cacheFile));
+            return;
+        }
+
+        if (oversized) {
+            rotate();
+        }
+    }
+
+    /**
+     * Moves the cache file aside (replacing the previously rotated file, if any),
+     * so glyphs persisted later are appended to a new file. Moved once closed, as open files
+     * cannot be moved on every platform.
+     */
+    private void rotate() {
+        File rotatedFile = new File(cacheFile.getPath() + ROTATED_FILE_SUFFIX);
+        try {
+            Files.move(cacheFile.toPath(), rotatedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Logger.getGlobal().info(String.format("Rotated glyph cache \"%s\" exceeding %d bytes to \"%s\"",
+                    cacheFile, MAX_FILE_SIZE, rotatedFile));
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to rotate glyph cache \"%s\"", cacheFile));
+        }
+    }
+
+    /**
+     * Reads the glyphs of the given content of the cache file into the cache, up to the first corrupted record.
+     * @param content The content of the cache file
+     * @return The length of the content's prefix of valid records, or 0 if the file's format is unknown
+     */
+    private long readGlyphs(byte[] content) {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(content);
+        DataInputStream input = new DataInputStream(bytes);
+        long validLength = 0;
+        try {
+            if (FILE_MAGIC != input.readInt()) {
+                return 0;
+            }
+            validLength = content.length - bytes.available();
+            while (bytes.available() > 0) {
+                String fontName = input.readUTF();
+                int pixelResolution = input.readInt();
+                if ((pixelResolution <= 0) || (pixelResolution > MAX_PIXEL_RESOLUTION)) {
+                    break;
+                }
+                char c = input.readChar();
+                byte[] packedGlyph = new byte[getPackedSize(pixelResolution)];
+                input.readFully(packedGlyph);
+                glyphs.put(getKey(c, fontName, pixelResolution), unpackGlyph(packedGlyph, pixelResolution));
+                validLength = content.length - bytes.available();
+            }
+        } catch (IOException e) {
+            // A truncated record, the valid records precede it
+        }
+        return validLength;
+    }
+
+    /**
+     * Appends the given glyph to the cache file, creating the file (and its directory) if needed.
+     * The file is locked while the record is appended, so records of processes sharing the file never interleave.
+     * Failing to persist is not critical, as the glyph will just be rendered again on the next run.
+     * @param c The character of the glyph
+     * @param fontName The name of the font the glyph is rendered in
+     * @param glyph The glyph to persist
+     */
+    private synchronized void persist(char c, String fontName, boolean[][] glyph) {
+        File cacheDirectory = cacheFile.getAbsoluteFile().getParentFile();
+        if ((null != cacheDirectory) && !cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+            Logger.getGlobal().warning(String.format("Failed to create glyph cache \"%s\"", cacheFile));
+            return;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, FILE_MODE)) {
+            // Released as the file is closed
+            file.getChannel().lock();
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(record);
+            // Checked under the lock, as another process may have created the file meanwhile
+            if (0 == file.length()) {
+                output.writeInt(FILE_MAGIC);
+            }
+            output.writeUTF(fontName);
+            output.writeInt(glyph.length);
+            output.writeChar(c);
+            output.write(packGlyph(glyph));
+            file.seek(file.length());
+            file.write(record.toByteArray());
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to write glyph cache \"%s\"", cacheFile));
+        }
+    }
+
+    /**
+     * @param c The character of the glyph
+     * @param fontName The name of the font the glyph is rendered in
+     * @param pixelResolution The dimension in pixels of the glyph
+     * @return The key of the glyph in the cache
+     */
+    private static String getKey(char c, String fontName, int pixelResolution) {
+        return fontName + '/' + pixelResolution + '/' + c;
+    }
+
+    /**
+     * @param pixelResolution The dimension in pixels of the glyph
+     * @return The number of bytes of the glyph, packed as a bit per pixel
+     */
+    private static int getPackedSize(int pixelResolution) {
+        return (pixelResolution * pixelResolution + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    /**
+     * @param glyph The glyph to pack
+     * @return The glyph packed as a bit per pixel, row after row
+     */
+    private static byte[] packGlyph(boolean[][] glyph) {
+        int pixelResolution = glyph.length;
+        byte[] packedGlyph = new byte[getPackedSize(pixelResolution)];
+        for (int row = 0; row < pixelResolution; row++) {
+            for (int col = 0; col < pixelResolution; col++) {
+                if (glyph[row][col]) {
+                    int bit = row * pixelResolution + col;
+                    packedGlyph[bit / Byte.SIZE] |= (byte) (1 << (bit % Byte.SIZE));
+                }
+            }
+        }
+        return packedGlyph;
+    }
+
+    /**
+     * @param packedGlyph The glyph packed as a bit per pixel, row after row
+     * @param pixelResolution The dimension in pixels of the glyph
+     * @return The unpacked glyph
+     */
+    private static boolean[][] unpackGlyph(byte[] packedGlyph, int pixelResolution) {
+        boolean[][] glyph = new boolean[pixelResolution][pixelResolution];
+        for (int row = 0; row < pixelResolution; row++) {
+            for (int col = 0; col < pixelResolution; col++) {
+                int bit = row * pixelResolution + col;
+                glyph[row][col] = 0 != (packedGlyph[bit / Byte.SIZE] & (1 << (bit % Byte.SIZE)));
+            }
+        }
+        return glyph;
+    }
+
+    /**
+     * @param glyph The glyph to copy
+     * @return A deep copy of the glyph
+     */
+    private static boolean[][] copyGlyph(boolean[][] glyph) {
+        boolean[][] copy = new boolean[glyph.length][];
+        for (int row = 0; row < glyph.length; row++) {
+            copy[row] = glyph[row].clone();
+        }
+        return copy;
+    }
+}
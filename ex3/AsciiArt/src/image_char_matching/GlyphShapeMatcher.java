@@ -0,0 +1,264 @@
+package image_char_matching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class for character-shape classification, an alternative to the brightness classification
+ * of SubImgCharMatcher. The glyph of each character is kept as a bitset, and a bitmap of a sub image
+ * is matched to the glyph of the smallest distance - the number of cells in which their ink differs
+ * (XOR and population count) relative to the number of cells inked in either (OR and population count),
+ * so sparse glyphs are not favored merely for having little ink to mismatch. Hence edges
+ * are matched to characters such as / | \ - rather than only to characters of similar brightness.
+ * The ink of both the glyphs and the bitmaps is centered before being compared,
+ * as the glyphs are rendered off center, and an edge may cross a sub image anywhere.
+ * Only glyphs of brightness close to the sub image's brightness are compared, the candidates
+ * of each brightness bucket being precomputed.
+ * @author Nimrod M.
+ */
+public class GlyphShapeMatcher {
+
+    /**
+     * The dimension (both width and height) of the bitmaps matched against the glyphs.
+     */
+    public static final int BITMAP_DIMENSION = CharConverter.DEFAULT_PIXEL_RESOLUTION;
+
+    private static final char NO_MATCH_CHAR = ' ';
+    private static final int BRIGHTNESS_BUCKETS = 16;
+    // Candidates are taken from the sub image's bucket and this many buckets on each side of it
+    private static final int CANDIDATE_BUCKET_RADIUS = 1;
+    private static final int BITMAP_CELLS = BITMAP_DIMENSION * BITMAP_DIMENSION;
+    private static final int BITSET_LENGTH = Math.ceilDiv(BITMAP_CELLS, Long.SIZE);
+    // The cells of a row of a bitmap, as the low bits of a long (a row fits in a long)
+    private static final long ROW_MASK = (Long.SIZE == BITMAP_DIMENSION) ? -1L : (1L << BITMAP_DIMENSION) - 1;
+    // For each bit of the column indices, the cells of a row whose column index has the bit set
+    private static final long[] COLUMN_BIT_MASKS = createColumnBitMasks();
+
+    private final char[] chars;
+    private final double[] normalizedBrightness;
+    // The centered ink of the glyphs of all the chars, BITSET_LENGTH longs per char, in the order of the chars
+    private final long[] glyphInk;
+    // The indices of the candidate chars of each brightness bucket, never empty for a non-empty charset
+    private final int[][] bucketCandidates;
+
+    /**
+     * Constructs a new GlyphShapeMatcher object using the given charset.
+     * @param charset The charset to be used for the classification
+     */
+    public GlyphShapeMatcher(char[] charset) {
+        chars = charset.clone();
+        normalizedBrightness = new double[chars.length];
+        glyphInk = new long[chars.length * BITSET_LENGTH];
+
+        double minBrightness = 1;
+        double maxBrightness = 0;
+        long[] bits = new long[BITSET_LENGTH];
+        for (int i = 0; i < chars.length; i++) {
+            boolean[][] glyph = CharConverter.convertToBoolArray(chars[i]);
+            Arrays.fill(bits, 0);
+            int trueValues = 0;
+            for (int cell = 0; cell < BITMAP_CELLS; cell++) {
+                if (glyph[cell / BITMAP_DIMENSION][cell % BITMAP_DIMENSION]) {
+                    bits[cell >>> 6] |= 1L << (cell & (Long.SIZE - 1));
+                    trueValues++;
+                }
+            }
+            centerInk(bits, glyphInk, i * BITSET_LENGTH);
+            normalizedBrightness[i] = (double) trueValues / BITMAP_CELLS;
+            minBrightness = Math.min(minBrightness, normalizedBrightness[i]);
+            maxBrightness = Math.max(maxBrightness, normalizedBrightness[i]);
+        }
+        // Stretched linearly to the whole range, as the brightness of SubImgCharMatcher
+        for (int i = 0; i < chars.length; i++) {
+            normalizedBrightness[i] = (maxBrightness > minBrightness) ?
+                    (normalizedBrightness[i] - minBrightness) / (maxBrightness - minBrightness) : 0;
+        }
+
+        bucketCandidates = new int[BRIGHTNESS_BUCKETS][];
+        for (int bucket = 0; bucket < BRIGHTNESS_BUCKETS; bucket++) {
+            bucketCandidates[bucket] = findCandidates(bucket);
+        }
+    }
+
+    /**
+     * Classifies the given bitmap to the character of the closest glyph, among the characters
+     * of brightness close to the given brightness. If several glyphs are equally close,
+     * the one of the closest brightness is chosen, and then the lowest character.
+     * @param bits The bitmap of the sub image, as a bitset of BITMAP_DIMENSION rows (a set bit is bright)
+     * @param brightness The brightness of the sub image, between 0 and 1
+     * @return The character with the closest glyph to the given bitmap
+     */
+    public char getCharByShape(long[] bits, double brightness) {
+        if (0 == chars.length) {
+            return NO_MATCH_CHAR;
+        }
+
+        long[] ink = new long[BITSET_LENGTH];
+        centerInk(bits, ink, 0);
+        int bucket = getBucket(brightness);
+        int closestIndex = -1;
+        // The distance of the closest glyph so far, as a fraction (ink difference / ink union)
+        int minimalDifference = 1;
+        int minimalUnion = 0;
+        for (int index : bucketCandidates[bucket]) {
+            int difference = 0;
+            int union = 0;
+            int glyphOffset = index * BITSET_LENGTH;
+            for (int word = 0; word < BITSET_LENGTH; word++) {
+                difference += Long.bitCount(ink[word] ^ glyphInk[glyphOffset + word]);
+                union += Long.bitCount(ink[word] | glyphInk[glyphOffset + word]);
+            }
+            // Two bitmaps without ink are identical
+            if (0 == union) {
+                union = 1;
+            }
+            // Comparing the fractions by cross multiplication, avoiding the division
+            long comparison = (long) difference * minimalUnion - (long) minimalDifference * union;
+            if ((-1 == closestIndex) || (comparison < 0) ||
+                    ((0 == comparison) && isPreferred(index, closestIndex, brightness))) {
+                minimalDifference = difference;
+                minimalUnion = union;
+                closestIndex = index;
+            }
+        }
+        return chars[closestIndex];
+    }
+
+    /**
+     * @param bucket The brightness bucket
+     * @return The indices of the chars whose brightness is in the bucket or its neighboring buckets,
+     *         or of the char of the closest brightness to the bucket's center if there are none
+     */
+    private int[] findCandidates(int bucket) {
+        List<Integer> candidates = new ArrayList<>();
+        int closestIndex = -1;
+        double bucketCenter = (bucket + 0.5) / BRIGHTNESS_BUCKETS;
+        for (int i = 0; i < chars.length; i++) {
+            if (Math.abs(getBucket(normalizedBrightness[i]) - bucket) <= CANDIDATE_BUCKET_RADIUS) {
+                candidates.add(i);
+            }
+            if ((-1 == closestIndex) || (Math.abs(normalizedBrightness[i] - bucketCenter) <
+                    Math.abs(normalizedBrightness[closestIndex] - bucketCenter))) {
+                closestIndex = i;
+            }
+        }
+        if (candidates.isEmpty() && (-1 != closestIndex)) {
+            candidates.add(closestIndex);
+        }
+        return candidates.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param index The index of a char
+     * @param otherIndex The index of another char, equally close in shape (or -1 for none)
+     * @param brightness The brightness of the sub image
+     * @return True if the char is preferred over the other char for the given brightness
+     */
+    private boolean isPreferred(int index, int otherIndex, double brightness) {
+        if (-1 == otherIndex) {
+            return true;
+        }
+        double diff = Math.abs(normalizedBrightness[index] - brightness);
+        double otherDiff = Math.abs(normalizedBrightness[otherIndex] - brightness);
+        return (diff < otherDiff) || ((diff == otherDiff) && (chars[index] < chars[otherIndex]));
+    }
+
+    /**
+     * Extracts the ink (the unset bits) of the given bitmap, shifted so that the centroid of the ink
+     * is at the bitmap's center. The cells shifted in from outside the bitmap have no ink.
+     * The bitmap is processed a row of cells at a time, as a long, rather than a cell at a time.
+     * @param bits The bitmap, a set bit marking a bright cell
+     * @param ink The array to write the centered ink to, a set bit marking an inked cell
+     * @param offset The offset in the array to write the centered ink at
+     */
+    private static void centerInk(long[] bits, long[] ink, int offset) {
+        long inkCells = 0;
+        long inkRowsSum = 0;
+        long inkColsSum = 0;
+        for (int row = 0; row < BITMAP_DIMENSION; row++) {
+            long rowInk = ~getRow(bits, 0, row) & ROW_MASK;
+            int rowInkCells = Long.bitCount(rowInk);
+            inkCells += rowInkCells;
+            inkRowsSum += (long) row * rowInkCells;
+            // The sum of the columns of the inked cells, a bit of the column indices at a time
+            for (int bit = 0; bit < COLUMN_BIT_MASKS.length; bit++) {
+                inkColsSum += (long) Long.bitCount(rowInk & COLUMN_BIT_MASKS[bit]) << bit;
+            }
+        }
+        // The center of the bitmap, between its two middle cells (for an even dimension)
+        double center = (BITMAP_DIMENSION - 1) / 2.0;
+        int rowShift = (0 == inkCells) ? 0 : (int) Math.round(center - (double) inkRowsSum / inkCells);
+        int colShift = (0 == inkCells) ? 0 : (int) Math.round(center - (double) inkColsSum / inkCells);
+
+        Arrays.fill(ink, offset, offset + BITSET_LENGTH, 0);
+        for (int row = 0; row < BITMAP_DIMENSION; row++) {
+            int sourceRow = row - rowShift;
+            if ((sourceRow < 0) || (sourceRow >= BITMAP_DIMENSION)) {
+                continue;
+            }
+            long rowInk = ~getRow(bits, 0, sourceRow) & ROW_MASK;
+            // The cell of column c is taken from column c - colShift of the source row
+            long shiftedInk = (colShift >= 0) ? (rowInk << colShift) : (rowInk >>> -colShift);
+            orRow(ink, offset, row, shiftedInk & ROW_MASK);
+        }
+    }
+
+    /**
+     * @param bits The bitset of bitmaps
+     * @param offset The offset of the bitmap in the bitset
+     * @param row The row of the bitmap
+     * @return The cells of the row, as the low bits of a long (the cell of column c at bit c)
+     */
+    private static long getRow(long[] bits, int offset, int row) {
+        int firstCell = row * BITMAP_DIMENSION;
+        int word = offset + (firstCell >>> 6);
+        int shift = firstCell & (Long.SIZE - 1);
+        long rowBits = bits[word] >>> shift;
+        // A row may continue in the next word
+        if (shift + BITMAP_DIMENSION > Long.SIZE) {
+            rowBits |= bits[word + 1] << (Long.SIZE - shift);
+        }
+        return rowBits & ROW_MASK;
+    }
+
+    /**
+     * Sets the given cells of a row of a bitmap, in addition to the cells already set.
+     * @param bits The bitset of bitmaps
+     * @param offset The offset of the bitmap in the bitset
+     * @param row The row of the bitmap
+     * @param rowBits The cells to set, as the low bits of a long (the cell of column c at bit c)
+     */
+    private static void orRow(long[] bits, int offset, int row, long rowBits) {
+        int firstCell = row * BITMAP_DIMENSION;
+        int word = offset + (firstCell >>> 6);
+        int shift = firstCell & (Long.SIZE - 1);
+        bits[word] |= rowBits << shift;
+        if (shift + BITMAP_DIMENSION > Long.SIZE) {
+            bits[word + 1] |= rowBits >>> (Long.SIZE - shift);
+        }
+    }
+
+    /**
+     * @return For each bit of the column indices, the cells of a row whose column index has the bit set
+     */
+    private static long[] createColumnBitMasks() {
+        long[] masks = new long[Integer.SIZE - Integer.numberOfLeadingZeros(BITMAP_DIMENSION - 1)];
+        for (int col = 0; col < BITMAP_DIMENSION; col++) {
+            for (int bit = 0; bit < masks.length; bit++) {
+                if (0 != ((col >>> bit) & 1)) {
+                    masks[bit] |= 1L << col;
+                }
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * @param brightness A brightness value, between 0 and 1
+     * @return The bucket of the brightness value
+     */
+    private static int getBucket(double brightness) {
+        return Math.min(Math.max((int) (brightness * BRIGHTNESS_BUCKETS), 0), BRIGHTNESS_BUCKETS - 1);
+    }
+}
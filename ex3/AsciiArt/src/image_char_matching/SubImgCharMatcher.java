@@ -1,60 +1,84 @@
 package image_char_matching;
 
-import java.util.*;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
 
 /**
  * A class for character-brightness classification.
+ * The charset is copy-on-write: every change replaces the matcher's immutable table (see CharMatchingTable)
+ * with a new one, so classifications never lock, and a classification running concurrently with a change
+ * sees either the charset before it or after it, never a mix. Changes are serialized by the matcher's lock.
  * @author Nimrod M.
  */
 public class SubImgCharMatcher {
 
-    private final TreeMap<Character, Double> charToBrightness;
-    private final TreeMap<Character, Double> charToNormalizedBrightness;
-    private double maxBrightness = 0;
-    private double minBrightness = 2;
+    // The brightness range before any character is added, stretched out by the first characters
+    private static final double INITIAL_MIN_BRIGHTNESS = 2;
+    private static final double INITIAL_MAX_BRIGHTNESS = 0;
+
+    private volatile CharMatchingTable table;
 
     /**
      * Constructs a new SubImgCharMatcher object using the given charset.
      * @param charset The charset to be used for the classification
      */
     public SubImgCharMatcher(char[] charset) {
-        charToBrightness = new TreeMap<>();
-        charToNormalizedBrightness = new TreeMap<>();
+        TreeMap<Character, Double> charToBrightness = new TreeMap<>();
+        double minBrightness = INITIAL_MIN_BRIGHTNESS;
+        double maxBrightness = INITIAL_MAX_BRIGHTNESS;
+        for (char c : charset) {
+            double charBrightness = getCharBrightness(c);
+            charToBrightness.put(c, charBrightness);
 
-        initBrightnessValues(charset);
+            // Updating the max and min brightness values
+            minBrightness = Math.min(minBrightness, charBrightness);
+            maxBrightness = Math.max(maxBrightness, charBrightness);
+        }
+        table = new CharMatchingTable(charToBrightness, minBrightness, maxBrightness);
+    }
+
+    /**
+     * Constructs a copy of the given SubImgCharMatcher, classifying exactly as it does,
+     * unaffected by later changes to its charset (and vice versa).
+     * @param other The matcher to copy
+     */
+    public SubImgCharMatcher(SubImgCharMatcher other) {
+        // The table is immutable, hence shared until either matcher changes its charset
+        this(other.table);
+    }
+
+    /**
+     * Constructs a new SubImgCharMatcher, classifying exactly as the given table does.
+     * @param table The table of the charset
+     */
+    public SubImgCharMatcher(CharMatchingTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @return An immutable snapshot of the current charset, classifying as the matcher currently does
+     */
+    public CharMatchingTable getTable() {
+        return table;
     }
 
     /**
      * @return The charset used for the classification
      */
     public char[] getCharset() {
-        char[] charset = new char[charToBrightness.size()];
-        int i = 0;
-        for (char c : charToBrightness.keySet()) {
-            charset[i] = c;
-            i++;
-        }
-        return charset;
+        return table.getCharset();
     }
 
     /**
      * Classifies the given brightness value to the closest character in the charset.
+     * If several characters are equally close, the lowest of them is returned.
      * @param brightness The brightness value to be classified
      * @return The character with the closest brightness to the given brightness
      */
     public char getCharByImageBrightness(double brightness) {
-        char bestMatch = ' ';
-        double minimalDiff = 2;
-
-        // Finding the character with the closest brightness to the given brightness
-        for (Map.Entry<Character, Double> entry : charToNormalizedBrightness.entrySet()) {
-            double diff = Math.abs(entry.getValue() - brightness);
-            if (diff < minimalDiff) {
-                minimalDiff = diff;
-                bestMatch = entry.getKey();
-            }
-        }
-        return bestMatch;
+        return table.getCharByImageBrightness(brightness);
     }
 
     /**
@@ -62,114 +86,98 @@ public class SubImgCharMatcher {
      * it will not be added again. Updates the rest of the values for the charset if needed.
      * @param c The character to be added to the charset
      */
-    public void addChar(char c) {
-        // If the character is already in the map, we don't need to add it again
+    public synchronized void addChar(char c) {
+        // If the character is already in the charset, we don't need to add it again
         // (and we don't want to update the brightness values)
-        if (charToBrightness.containsKey(c)) {
+        if (table.inCharset(c)) {
             return;
         }
 
         double charBrightness = getCharBrightness(c);
+        TreeMap<Character, Double> charToBrightness = table.getCharToBrightness();
         charToBrightness.put(c, charBrightness);
-        // If the character's brightness doesn't change the min/max, we just add it to the map
-        // after performing the linear stretching
-        if ((charBrightness <= maxBrightness) && (charBrightness >= minBrightness)) {
-            charToNormalizedBrightness.put(
-                    c, getLinearStretch(minBrightness, maxBrightness, charBrightness));
-        } else { // The character's brightness changes the min/max, so we need to update the map
-            updateMinMax(charBrightness);
-            updateLinearStretch();
-        }
+        // The brightness of every character is restretched if the character changes the min/max
+        table = new CharMatchingTable(charToBrightness, Math.min(table.getMinBrightness(), charBrightness),
+                Math.max(table.getMaxBrightness(), charBrightness));
     }
 
     /**
      * Removes the given character from the charset. If the character is not in the charset,
-     * nothing will happen. Updates the rest of the values for the charset if needed.
+     * nothing will happen. The min/max are never narrowed by a removal,
+     * hence the normalized brightness of the remaining characters is unchanged.
      * @param c The character to be removed from the charset
      */
-    public void removeChar(char c) {
-        if (!charToBrightness.containsKey(c)) {
-            return;
-        }
-
-        double charBrightness = charToBrightness.remove(c);
-        charToNormalizedBrightness.remove(c);
-
-        // If the character's brightness doesn't change the min/max, we just remove it from the map
-        if ((charBrightness != maxBrightness) && (charBrightness != minBrightness)) {
-            return;
-        }
-
-        // Otherwise, finding new min and max brightness values
-        for (Map.Entry<Character, Double> entry : charToBrightness.entrySet()) {
-            updateMinMax(entry.getValue());
-        }
-
-        updateLinearStretch();
-    }
-
-    /**
-     * @param c The character to be checked
-     * @return True if the character is in the charset, false otherwise
-     */
-    public boolean inCharset(char c) {
-        return charToBrightness.containsKey(c);
+    public synchronized void removeChar(char c) {
+        removeChars(new char[]{c});
     }
 
     /**
-     * Initializes the regular & normalized brightness values for the charset.
-     * @param charset The charset to be used for the classification
+     * Adds the given characters to the charset, as if they were added one by one, but with
+     * their glyphs rendered in parallel, and the charset renormalized once.
+     * Characters already in the charset are ignored.
+     * @param chars The characters to be added to the charset
      */
-    private void initBrightnessValues(char[] charset) {
-        for (char c : charset) {
-            double charBrightness = getCharBrightness(c);
-            charToBrightness.put(c, charBrightness);
+    public synchronized void addChars(char[] chars) {
+        Set<Character> newCharSet = new LinkedHashSet<>();
+        for (char c : chars) {
+            if (!table.inCharset(c)) {
+                newCharSet.add(c);
+            }
+        }
+        if (newCharSet.isEmpty()) {
+            return;
+        }
 
-            // Updating the max and min brightness values
-            updateMinMax(charBrightness);
+        char[] newChars = new char[newCharSet.size()];
+        int charIndex = 0;
+        for (char c : newCharSet) {
+            newChars[charIndex] = c;
+            charIndex++;
         }
 
-        updateLinearStretch();
+        double[] newBrightness = new double[newChars.length];
+        IntStream.range(0, newChars.length).parallel()
+                .forEach(i -> newBrightness[i] = getCharBrightness(newChars[i]));
+
+        TreeMap<Character, Double> charToBrightness = table.getCharToBrightness();
+        double minBrightness = table.getMinBrightness();
+        double maxBrightness = table.getMaxBrightness();
+        for (int i = 0; i < newChars.length; i++) {
+            charToBrightness.put(newChars[i], newBrightness[i]);
+            minBrightness = Math.min(minBrightness, newBrightness[i]);
+            maxBrightness = Math.max(maxBrightness, newBrightness[i]);
+        }
+        table = new CharMatchingTable(charToBrightness, minBrightness, maxBrightness);
     }
 
     /**
-     * Updates the min and max brightness values, if needed.
-     * @param brightness The brightness value to be checked
+     * Removes the given characters from the charset, as if they were removed one by one,
+     * but with the lookup tables rebuilt once. The min/max are never narrowed by a removal,
+     * hence the normalized brightness of the remaining characters is unchanged.
+     * Characters not in the charset are ignored.
+     * @param chars The characters to be removed from the charset
      */
-    private void updateMinMax(double brightness) {
-
-        if (brightness > maxBrightness) {
-            maxBrightness = brightness;
-        }
-        if (brightness < minBrightness) {
-            minBrightness = brightness;
+    public synchronized void removeChars(char[] chars) {
+        TreeMap<Character, Double> charToBrightness = table.getCharToBrightness();
+        boolean isModified = false;
+        for (char c : chars) {
+            if (null != charToBrightness.remove(c)) {
+                isModified = true;
+            }
         }
-    }
 
-    /**
-     * Updates the normalized brightness values for the charset.
-     * Max/Min brightness values should be updated before calling this method.
-     */
-    private void updateLinearStretch() {
-        for (Map.Entry<Character, Double> entry : charToBrightness.entrySet()) {
-            double newBrightness =
-                    getLinearStretch(minBrightness, maxBrightness, entry.getValue());
-            charToNormalizedBrightness.put(entry.getKey(), newBrightness);
+        if (isModified) {
+            table = new CharMatchingTable(
+                    charToBrightness, table.getMinBrightness(), table.getMaxBrightness());
         }
     }
 
     /**
-     * Calculates the linear stretching of the given brightness value.
-     * @param minBrightness The minimum brightness value
-     * @param maxBrightness The maximum brightness value
-     * @param brightness The brightness value to be normalized
-     * @return The normalized brightness value
+     * @param c The character to be checked
+     * @return True if the character is in the charset, false otherwise
      */
-    private static double getLinearStretch(
-            double minBrightness, double maxBrightness, double brightness) {
-        // There is an assumption here that maxBrightness > minBrightness,
-        // hence that they are not equal and the denominator is not 0.
-        return (brightness - minBrightness) / (maxBrightness - minBrightness);
+    public boolean inCharset(char c) {
+        return table.inCharset(c);
     }
 
     /**
@@ -0,0 +1,28 @@
+package instrumentation;
+
+/**
+ * The stages of a conversion of an image to ASCII art, which are timed separately.
+ * @author Nimrod M.
+ */
+public enum Stage {
+    /**
+     * Decoding the image file to pixels.
+     */
+    DECODE,
+    /**
+     * Padding the image to the dimensions required by the padding mode.
+     */
+    PADDING,
+    /**
+     * Dividing the padded image to sub images, and calculating their brightness.
+     */
+    TILING,
+    /**
+     * Matching each sub image to a character of the charset.
+     */
+    MATCHING,
+    /**
+     * Outputting the ASCII art to the console or to a file.
+     */
+    OUTPUT
+}
@@ -0,0 +1,29 @@
+package instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event of a single run of a stage, for profiling conversions offline.
+ * Recorded only while a flight recording with the event enabled is running
+ * (for example, java -XX:StartFlightRecording ...), otherwise it costs next to nothing.
+ * @author Nimrod M.
+ */
+@Name("ascii_art.Stage")
+@Label("ASCII Art Stage")
+@Category("ASCII Art")
+@Description("A single run of a stage of the conversion of an image to ASCII art")
+class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    // -1 for a stage run in parallel, whose allocations are made by other threads
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
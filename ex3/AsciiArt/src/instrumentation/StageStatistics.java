@@ -0,0 +1,252 @@
+package instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Cumulative and last-run timing and allocation statistics of each stage of the conversions.
+ * A stage is timed by running it through the statistics, for example:
+ * BufferedImage im = StageStatistics.getGlobal().time(Stage.DECODE, () -> ImageIO.read(file));
+ * The allocations are measured on the calling thread, so they are unavailable for stages run in parallel.
+ * The statistics may be recorded by several threads at once.
+ * @author Nimrod M.
+ */
+public class StageStatistics {
+
+    /**
+     * A stage (or a part of it) being timed.
+     * @param <T> The type of the result of the stage
+     * @param <E> The type of the exception the stage may throw
+     */
+    public interface StageAction<T, E extends Exception> {
+        /**
+         * @return The result of the stage
+         * @throws E If the stage failed
+         */
+        T run() throws E;
+    }
+
+    /**
+     * The value of the allocated bytes when allocations cannot be measured in this JVM.
+     */
+    public static final long UNAVAILABLE = -1;
+    private static final StageStatistics GLOBAL = new StageStatistics();
+    // Null if the JVM cannot measure the allocations of a thread
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = createThreadBean();
+
+    private final Map<Stage, StageRecord> records = new EnumMap<>(Stage.class);
+
+    /**
+     * Constructs new, empty, statistics.
+     */
+    public StageStatistics() {
+        for (Stage stage : Stage.values()) {
+            records.put(stage, new StageRecord());
+        }
+    }
+
+    /**
+     * @return The statistics of all the conversions of the program
+     */
+    public static StageStatistics getGlobal() {
+        return GLOBAL;
+    }
+
+    /**
+     * Starts timing a run of the given stage, recorded in these statistics when the timer is closed.
+     * The allocations of the run are those of the calling thread.
+     * @param stage The stage being run
+     * @return The timer of the run
+     */
+    public StageTimer start(Stage stage) {
+        return new StageTimer(this, stage, false);
+    }
+
+    /**
+     * Runs the given stage on the calling thread, and records the run in these statistics
+     * (even if the stage throws).
+     * @param stage The stage being run
+     * @param action The stage
+     * @param <T> The type of the result of the stage
+     * @param <E> The type of the exception the stage may throw
+     * @return The result of the stage
+     * @throws E If the stage failed
+     */
+    public <T, E extends Exception> T time(Stage stage, StageAction<T, E> action) throws E {
+        return time(stage, false, action);
+    }
+
+    /**
+     * Runs the given stage, and records the run in these statistics (even if the stage throws).
+     * The allocations of a stage run in parallel are made by other threads, hence are recorded as unavailable.
+     * @param stage The stage being run
+     * @param inParallel True if the stage runs (in part) on other threads
+     * @param action The stage
+     * @param <T> The type of the result of the stage
+     * @param <E> The type of the exception the stage may throw
+     * @return The result of the stage
+     * @throws E If the stage failed
+     */
+    public <T, E extends Exception> T time(Stage stage, boolean inParallel, StageAction<T, E> action) throws E {
+        StageTimer timer = new StageTimer(this, stage, inParallel);
+        try {
+            return action.run();
+        } finally {
+            timer.close();
+        }
+    }
+
+    /**
+     * @param stage The stage
+     * @return The number of runs of the stage
+     */
+    public long getRuns(Stage stage) {
+        return records.get(stage).getRuns();
+    }
+
+    /**
+     * @param stage The stage
+     * @return The total duration of all the runs of the stage, in nanoseconds
+     */
+    public long getTotalNanos(Stage stage) {
+        return records.get(stage).getTotalNanos();
+    }
+
+    /**
+     * @param stage The stage
+     * @return The duration of the last run of the stage in nanoseconds, 0 if it was not run
+     */
+    public long getLastNanos(Stage stage) {
+        return records.get(stage).getLastNanos();
+    }
+
+    /**
+     * @param stage The stage
+     * @return The total number of bytes allocated by all the runs of the stage,
+     * or UNAVAILABLE if any of them was not measured
+     */
+    public long getTotalAllocatedBytes(Stage stage) {
+        return (null == THREAD_BEAN) ? UNAVAILABLE : records.get(stage).getTotalAllocatedBytes();
+    }
+
+    /**
+     * @param stage The stage
+     * @return The number of bytes allocated by the last run of the stage, or UNAVAILABLE if it was not measured
+     */
+    public long getLastAllocatedBytes(Stage stage) {
+        return (null == THREAD_BEAN) ? UNAVAILABLE : records.get(stage).getLastAllocatedBytes();
+    }
+
+    /**
+     * Resets the statistics of all the stages.
+     */
+    public void reset() {
+        for (StageRecord record : records.values()) {
+            record.reset();
+        }
+    }
+
+    /**
+     * Records a single run of a stage.
+     * @param stage The stage which was run
+     * @param nanos The duration of the run, in nanoseconds
+     * @param allocatedBytes The number of bytes allocated by the run, or UNAVAILABLE
+     */
+    void record(Stage stage, long nanos, long allocatedBytes) {
+        records.get(stage).record(nanos, allocatedBytes);
+    }
+
+    /**
+     * @return The number of bytes allocated by the current thread so far, 0 if it cannot be measured
+     */
+    static long getAllocatedBytes() {
+        return (null == THREAD_BEAN) ? 0 : THREAD_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @return The thread bean measuring the allocations of threads, or null if it is not supported
+     */
+    private static com.sun.management.ThreadMXBean createThreadBean() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean allocationBean) ||
+                !allocationBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationBean;
+    }
+
+    /**
+     * The statistics of a single stage.
+     */
+    private static class StageRecord {
+
+        private long runs = 0;
+        private long totalNanos = 0;
+        private long lastNanos = 0;
+        private long totalAllocatedBytes = 0;
+        private long lastAllocatedBytes = 0;
+
+        /**
+         * @param nanos The duration of the run, in nanoseconds
+         * @param allocatedBytes The number of bytes allocated by the run, or UNAVAILABLE
+         */
+        synchronized void record(long nanos, long allocatedBytes) {
+            runs++;
+            totalNanos += nanos;
+            lastNanos = nanos;
+            // A single unmeasured run leaves the total unknown, until the statistics are reset
+            totalAllocatedBytes = ((UNAVAILABLE == allocatedBytes) || (UNAVAILABLE == totalAllocatedBytes)) ?
+                    UNAVAILABLE : totalAllocatedBytes + allocatedBytes;
+            lastAllocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * Resets the statistics of the stage.
+         */
+        synchronized void reset() {
+            runs = 0;
+            totalNanos = 0;
+            lastNanos = 0;
+            totalAllocatedBytes = 0;
+            lastAllocatedBytes = 0;
+        }
+
+        /**
+         * @return The number of runs of the stage
+         */
+        synchronized long getRuns() {
+            return runs;
+        }
+
+        /**
+         * @return The total duration of the runs, in nanoseconds
+         */
+        synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return The duration of the last run, in nanoseconds
+         */
+        synchronized long getLastNanos() {
+            return lastNanos;
+        }
+
+        /**
+         * @return The total number of bytes allocated by the runs
+         */
+        synchronized long getTotalAllocatedBytes() {
+            return totalAllocatedBytes;
+        }
+
+        /**
+         * @return The number of bytes allocated by the last run
+         */
+        synchronized long getLastAllocatedBytes() {
+            return lastAllocatedBytes;
+        }
+    }
+}
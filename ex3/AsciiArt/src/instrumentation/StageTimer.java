@@ -0,0 +1,51 @@
+package instrumentation;
+
+/**
+ * Times a single run of a stage, from its start until it is closed,
+ * and records it in the statistics it was started by.
+ * The allocated bytes are those of the thread which started the timer, so for a stage run in parallel
+ * (whose allocations are mostly made by the workers of the run) they are recorded as unavailable.
+ * @author Nimrod M.
+ */
+public class StageTimer implements AutoCloseable {
+
+    private final StageStatistics statistics;
+    private final Stage stage;
+    private final StageEvent event = new StageEvent();
+    private final long startNanos;
+    private final boolean inParallel;
+    private final long startAllocatedBytes;
+
+    /**
+     * Starts timing a run of the given stage.
+     * @param statistics The statistics to record the run in
+     * @param stage The stage being run
+     * @param inParallel True if the stage runs (in part) on other threads
+     */
+    StageTimer(StageStatistics statistics, Stage stage, boolean inParallel) {
+        this.statistics = statistics;
+        this.stage = stage;
+        this.inParallel = inParallel;
+        event.begin();
+        startAllocatedBytes = StageStatistics.getAllocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Stops timing the run, and records it.
+     */
+    @Override
+    public void close() {
+        long nanos = System.nanoTime() - startNanos;
+        long allocatedBytes = inParallel ? StageStatistics.UNAVAILABLE :
+                StageStatistics.getAllocatedBytes() - startAllocatedBytes;
+        statistics.record(stage, nanos, allocatedBytes);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stage.name();
+            event.allocatedBytes = allocatedBytes;
+            event.commit();
+        }
+    }
+}
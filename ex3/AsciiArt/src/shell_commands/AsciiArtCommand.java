@@ -2,13 +2,17 @@ package shell_commands;
 
 import ascii_art.AsciiArtAlgorithm;
 import ascii_art.OutputController;
+import ascii_art.OutputMethod;
 import exceptions.ShellCommandException;
 
+import java.io.PrintStream;
+import java.util.concurrent.Callable;
+
 /**
  * A command that outputs the ASCII Art to the user in the selected form of output.
  * @author Nimrod M.
  */
-public class AsciiArtCommand implements ShellCommand {
+public class AsciiArtCommand implements DeferrableShellCommand {
 
     private final AsciiArtAlgorithm asciiArtAlgorithm;
     private final OutputController outputController;
@@ -27,15 +31,38 @@ public class AsciiArtCommand implements ShellCommand {
     /**
      * Executes the command, outputting the ASCII Art to the user in the selected form of output.
      * @param arguments The arguments for the command - not used
+     * @param output The stream the command prints to
      * @throws ShellCommandException If the command was not executed successfully
      */
     @Override
-    public void execute(String[] arguments) throws ShellCommandException {
+    public void execute(String[] arguments, PrintStream output) throws ShellCommandException {
         if (0 == asciiArtAlgorithm.getCharset().length) {
             throw new ShellCommandException("Did not execute. Charset is empty.");
         }
 
         char[][] asciiArt = asciiArtAlgorithm.run();
-        outputController.toOutput(asciiArt);
+        outputController.toOutput(asciiArt, output);
+    }
+
+    /**
+     * Captures the current state of the ASCII Art algorithm and the selected form of output,
+     * and defers the run of the algorithm (and then the output) to be executed later, on any thread.
+     * @param arguments The arguments for the command - not used
+     * @param output The stream the ASCII art is emitted to, if output to the console
+     * @return The run of the algorithm, resulting in the output of the ASCII Art
+     * @throws ShellCommandException If the command cannot be executed with the current charset
+     */
+    @Override
+    public Callable<Runnable> defer(String[] arguments, PrintStream output) throws ShellCommandException {
+        if (0 == asciiArtAlgorithm.getCharset().length) {
+            throw new ShellCommandException("Did not execute. Charset is empty.");
+        }
+
+        AsciiArtAlgorithm algorithmSnapshot = asciiArtAlgorithm.copy();
+        OutputMethod outputMethod = outputController.getOutputMethod();
+        return () -> {
+            char[][] asciiArt = algorithmSnapshot.run();
+            return () -> outputController.toOutput(asciiArt, outputMethod, output);
+        };
     }
 }
@@ -2,6 +2,8 @@ package shell_commands;
 
 import ascii_art.AsciiArtAlgorithm;
 
+import java.io.PrintStream;
+
 /**
  * A command that outputs the charset of the ASCII Art to the user.
  * @author Nimrod M.
@@ -19,15 +21,16 @@ public class CharDisplayCommand implements ShellCommand {
     }
 
     /**
-     * Executes the command, outputting the charset of the ASCII Art to the user (stdout).
+     * Executes the command, outputting the charset of the ASCII Art to the user (the output stream).
      * @param arguments The arguments for the command - not used
+     * @param output The stream the command prints to
      */
     @Override
-    public void execute(String[] arguments) {
+    public void execute(String[] arguments, PrintStream output) {
         char[] charset = asciiArtAlgorithm.getCharset();
         for (char c : charset) {
-            System.out.print(c + " ");
+            output.print(c + " ");
         }
-        System.out.println();
+        output.println();
     }
 }
@@ -3,6 +3,8 @@ package shell_commands;
 import ascii_art.AsciiArtAlgorithm;
 import exceptions.ShellCommandException;
 
+import java.io.PrintStream;
+
 /**
  * A command that adds or removes chars from the charset of the ASCII Art.
  * @author Nimrod M.
@@ -37,10 +39,11 @@ public class CharModifyCommand implements ShellCommand {
      * Executes the command, adding or removing chars from the charset of the ASCII Art.
      * @param arguments The arguments for the command -
      *                  a single char, range of chars, "all" for all chars, or "space" for space
+     * @param output The stream the command prints to
      * @throws ShellCommandException If the command was not executed successfully
      */
     @Override
-    public void execute(String[] arguments) throws ShellCommandException {
+    public void execute(String[] arguments, PrintStream output) throws ShellCommandException {
         if (1 != arguments.length) {
             throw new ShellCommandException(getErrorMessage());
         }
@@ -89,7 +92,7 @@ public class CharModifyCommand implements ShellCommand {
     }
 
     /**
-     * Adds a range of chars to the charset of the ASCII Art.
+     * Adds (or removes) a range of chars to the charset of the ASCII Art, all at once.
      * @param start The start of the range
      * @param end The end of the range
      */
@@ -98,8 +101,15 @@ public class CharModifyCommand implements ShellCommand {
         assert start >= 0;
         assert start <= 0xFF && end <= 0xFF;
 
+        char[] chars = new char[end - start + 1];
         for (int i = start; i <= end; i++) {
-            modifyChar((char) i);
+            chars[i - start] = (char) i;
+        }
+
+        if (shouldAdd) {
+            asciiArtAlgorithm.addChars(chars);
+        } else {
+            asciiArtAlgorithm.removeChars(chars);
         }
     }
 
@@ -0,0 +1,25 @@
+package shell_commands;
+
+import exceptions.ShellCommandException;
+
+import java.io.PrintStream;
+import java.util.concurrent.Callable;
+
+/**
+ * A shell command whose work may be deferred to another thread, separately from emitting its output.
+ * Allows running several such commands concurrently, while emitting their output in order.
+ * @author Nimrod M.
+ */
+public interface DeferrableShellCommand extends ShellCommand {
+
+    /**
+     * Captures everything the command depends on, so that later commands do not affect it,
+     * and returns the deferred work of the command.
+     * @param arguments The arguments for the command
+     * @param output The stream the command's output is emitted to
+     * @return The work of the command, which may run on any thread,
+     *         resulting in the emission of the command's output
+     * @throws ShellCommandException If the command cannot be executed with its current state or arguments
+     */
+    Callable<Runnable> defer(String[] arguments, PrintStream output) throws ShellCommandException;
+}
@@ -1,43 +1,50 @@
 package shell_commands;
 
 import ascii_art.AsciiArtAlgorithm;
+import ascii_art.ImageCache;
 import exceptions.ShellCommandException;
 import image.BaseImage;
-import image.Image;
 
 import java.io.IOException;
+import java.io.PrintStream;
 
 /**
  * A command that selects an image for the ASCII Art algorithm to use.
+ * Recently used images are taken from the image cache, rather than decoded again.
  * @author Nimrod M.
  */
 public class ImageSelectorCommand implements ShellCommand {
 
     private static final String INVALID_ARGUMENT_MESSAGE = "Did not execute due to problem with image file.";
     private final AsciiArtAlgorithm asciiArtAlgorithm;
+    private final ImageCache imageCache;
 
     /**
      * Constructs a new ImageSelectorCommand,
      * the image selected will be modified in the ASCII Art algorithm.
      * @param asciiArtAlgorithm The algorithm to be used for the ASCII Art
+     * @param imageCache The cache of the images, which is also set as the cache of the algorithm
      */
-    public ImageSelectorCommand(AsciiArtAlgorithm asciiArtAlgorithm) {
+    public ImageSelectorCommand(AsciiArtAlgorithm asciiArtAlgorithm, ImageCache imageCache) {
         this.asciiArtAlgorithm = asciiArtAlgorithm;
+        this.imageCache = imageCache;
+        asciiArtAlgorithm.setImageCache(imageCache);
     }
 
     /**
      * @param arguments The arguments for the command - relative/absolute path to the image file
+     * @param output The stream the command prints to
      * @throws ShellCommandException If the command was not executed successfully
      */
     @Override
-    public void execute(String[] arguments) throws ShellCommandException {
+    public void execute(String[] arguments, PrintStream output) throws ShellCommandException {
         if (1 != arguments.length) {
             throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
         }
 
         BaseImage image;
         try {
-            image = new Image(arguments[0]);
+            image = imageCache.getImage(arguments[0]);
         } catch (IOException e) {
             throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
         }
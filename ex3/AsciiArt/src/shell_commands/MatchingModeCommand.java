@@ -0,0 +1,52 @@
+package shell_commands;
+
+import ascii_art.AsciiArtAlgorithm;
+import ascii_art.MatchingMode;
+import exceptions.ShellCommandException;
+
+import java.io.PrintStream;
+
+/**
+ * A command that changes the way the ASCII Art algorithm matches sub images to characters.
+ * @author Nimrod M.
+ */
+public class MatchingModeCommand implements ShellCommand {
+
+    private static final String INVALID_ARGUMENT_MESSAGE =
+            "Did not change matching mode due to incorrect format.";
+
+    private final AsciiArtAlgorithm asciiArtAlgorithm;
+
+    /**
+     * Constructs a new MatchingModeCommand.
+     * @param asciiArtAlgorithm The algorithm to be used for the ASCII Art
+     */
+    public MatchingModeCommand(AsciiArtAlgorithm asciiArtAlgorithm) {
+        this.asciiArtAlgorithm = asciiArtAlgorithm;
+    }
+
+    /**
+     * Executes the command, changing the matching mode of the ASCII Art algorithm.
+     * (without executing the algorithm itself)
+     * @param arguments The arguments for the command - "brightness" or "shape"
+     * @param output The stream the command prints to
+     * @throws ShellCommandException If the command was not executed successfully
+     */
+    @Override
+    public void execute(String[] arguments, PrintStream output) throws ShellCommandException {
+        if (1 != arguments.length) {
+            throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
+        }
+
+        switch (arguments[0]) {
+            case "brightness":
+                asciiArtAlgorithm.setMatchingMode(MatchingMode.BRIGHTNESS);
+                break;
+            case "shape":
+                asciiArtAlgorithm.setMatchingMode(MatchingMode.SHAPE);
+                break;
+            default:
+                throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import ascii_art.OutputController;
 import ascii_art.OutputMethod;
 import exceptions.ShellCommandException;
 
+import java.io.PrintStream;
+
 /**
  * A command that changes the output method of the ASCII Art to the user.
  * @author Nimrod M.
@@ -28,11 +30,12 @@ public class OutputCommand implements ShellCommand {
     /**
      * Executes the command, changing the output method of the ASCII Art to the user.
      * (without executing the algorithm itself)
-     * @param arguments The arguments for the command - "html" or "console"
+     * @param arguments The arguments for the command - "html", "html.gz" (compressed HTML) or "console"
+     * @param output The stream the command prints to
      * @throws ShellCommandException If the command was not executed successfully
      */
     @Override
-    public void execute(String[] arguments) throws ShellCommandException {
+    public void execute(String[] arguments, PrintStream output) throws ShellCommandException {
         if (1 != arguments.length) {
             throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
         }
@@ -42,6 +45,9 @@ public class OutputCommand implements ShellCommand {
             case "html":
                 outputController.setOutputMethod(OutputMethod.HTML);
                 break;
+            case "html.gz":
+                outputController.setOutputMethod(OutputMethod.COMPRESSED_HTML);
+                break;
             case "console":
                 outputController.setOutputMethod(OutputMethod.CONSOLE);
                 break;
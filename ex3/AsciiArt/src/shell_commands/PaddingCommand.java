@@ -0,0 +1,52 @@
+package shell_commands;
+
+import ascii_art.AsciiArtAlgorithm;
+import exceptions.ShellCommandException;
+import image.PaddingMode;
+
+import java.io.PrintStream;
+
+/**
+ * A command that changes the way the ASCII Art algorithm pads the image before dividing it to sub images.
+ * @author Nimrod M.
+ */
+public class PaddingCommand implements ShellCommand {
+
+    private static final String INVALID_ARGUMENT_MESSAGE =
+            "Did not change padding due to incorrect format.";
+
+    private final AsciiArtAlgorithm asciiArtAlgorithm;
+
+    /**
+     * Constructs a new PaddingCommand.
+     * @param asciiArtAlgorithm The algorithm to be used for the ASCII Art
+     */
+    public PaddingCommand(AsciiArtAlgorithm asciiArtAlgorithm) {
+        this.asciiArtAlgorithm = asciiArtAlgorithm;
+    }
+
+    /**
+     * Executes the command, changing the padding mode of the ASCII Art algorithm.
+     * (without executing the algorithm itself)
+     * @param arguments The arguments for the command - "pow2" or "aligned"
+     * @param output The stream the command prints to
+     * @throws ShellCommandException If the command was not executed successfully
+     */
+    @Override
+    public void execute(String[] arguments, PrintStream output) throws ShellCommandException {
+        if (1 != arguments.length) {
+            throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
+        }
+
+        switch (arguments[0]) {
+            case "pow2":
+                asciiArtAlgorithm.setPaddingMode(PaddingMode.POWER_OF_TWO);
+                break;
+            case "aligned":
+                asciiArtAlgorithm.setPaddingMode(PaddingMode.TILE_ALIGNED);
+                break;
+            default:
+                throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
+        }
+    }
+}
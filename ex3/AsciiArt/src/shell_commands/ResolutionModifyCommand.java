@@ -4,6 +4,8 @@ import ascii_art.AsciiArtAlgorithm;
 import exceptions.ShellCommandException;
 import image.BaseImage;
 
+import java.io.PrintStream;
+
 /**
  * A command that changes the resolution of the ASCII Art to the user.
  * @author Nimrod M.
@@ -33,10 +35,11 @@ public class ResolutionModifyCommand implements ShellCommand {
      * Executes the command, changing the resolution of the ASCII Art to the user.
      * Only changes the resolution if it is within the boundaries.
      * @param arguments The arguments for the command - "up" or "down"
+     * @param output The stream the command prints to
      * @throws ShellCommandException If the command was not executed successfully
      */
     @Override
-    public void execute(String[] arguments) throws ShellCommandException {
+    public void execute(String[] arguments, PrintStream output) throws ShellCommandException {
         if (1 != arguments.length) {
             throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
         }
@@ -58,7 +61,7 @@ public class ResolutionModifyCommand implements ShellCommand {
             throw new ShellCommandException(CRITICAL_RESOLUTION_MESSAGE);
         }
         asciiArtAlgorithm.setResolution(newResolution);
-        System.out.printf(RESOLUTION_CHANGED_MESSAGE, newResolution);
+        output.printf(RESOLUTION_CHANGED_MESSAGE, newResolution);
     }
 
     private boolean validateResolution(int resolution) {
@@ -2,6 +2,8 @@ package shell_commands;
 
 import exceptions.ShellCommandException;
 
+import java.io.PrintStream;
+
 /**
  * An interface for a shell command that can be executed by the user.
  * @author Nimrod M.
@@ -10,8 +12,11 @@ public interface ShellCommand {
 
     /**
      * Executes the command with the given arguments.
+     * Whatever the command prints is printed to the given stream, rather than to the standard output,
+     * so the caller may hold back or redirect the output of a single command.
      * @param arguments The arguments for the command
+     * @param output The stream the command prints to
      * @throws ShellCommandException If the command was not executed successfully
      */
-    void execute(String[] arguments) throws ShellCommandException;
+    void execute(String[] arguments, PrintStream output) throws ShellCommandException;
 }
@@ -1,6 +1,7 @@
 package shell_commands;
 
 import ascii_art.AsciiArtAlgorithm;
+import ascii_art.ImageCache;
 import ascii_art.OutputController;
 
 import java.util.HashMap;
@@ -27,13 +28,31 @@ public class ShellCommandFactory {
      */
     public static HashMap<String, ShellCommand> createCommands(
             AsciiArtAlgorithm asciiArtAlgorithm, OutputController outputController) {
+        return createCommands(asciiArtAlgorithm, outputController,
+                new ImageCache(ImageCache.getConfiguredMemoryBudget()));
+    }
+
+    /**
+     * Creates a map of the commands available for the ASCII Art program,
+     * mapping between the literal command string and the proper command object.
+     * @param asciiArtAlgorithm The algorithm to be used for the ASCII Art
+     * @param outputController The output controller to be used for the ASCII Art
+     * @param imageCache The cache of the images selected by the image command
+     * @return A map of the commands available for the ASCII Art program
+     */
+    public static HashMap<String, ShellCommand> createCommands(AsciiArtAlgorithm asciiArtAlgorithm,
+            OutputController outputController, ImageCache imageCache) {
         HashMap<String, ShellCommand> commands = new HashMap<>();
         commands.put("chars", new CharDisplayCommand(asciiArtAlgorithm));
         commands.put("add", new CharModifyCommand(asciiArtAlgorithm, true));
         commands.put("remove", new CharModifyCommand(asciiArtAlgorithm, false));
         commands.put("res", new ResolutionModifyCommand(asciiArtAlgorithm));
-        commands.put("image", new ImageSelectorCommand(asciiArtAlgorithm));
+        commands.put("image", new ImageSelectorCommand(asciiArtAlgorithm, imageCache));
         commands.put("output", new OutputCommand(outputController));
+        commands.put("match", new MatchingModeCommand(asciiArtAlgorithm));
+        commands.put("padding", new PaddingCommand(asciiArtAlgorithm));
+        commands.put("speculate", new SpeculationCommand(asciiArtAlgorithm));
+        commands.put("stats", new StatsCommand());
         commands.put("asciiArt", new AsciiArtCommand(asciiArtAlgorithm, outputController));
         return commands;
     }
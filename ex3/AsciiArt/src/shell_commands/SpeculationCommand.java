@@ -0,0 +1,50 @@
+package shell_commands;
+
+import ascii_art.AsciiArtAlgorithm;
+import exceptions.ShellCommandException;
+
+import java.io.PrintStream;
+
+/**
+ * A command that turns the background precomputation of the neighbouring resolutions on or off.
+ * @author Nimrod M.
+ */
+public class SpeculationCommand implements ShellCommand {
+
+    private static final String INVALID_ARGUMENT_MESSAGE =
+            "Did not change speculation due to incorrect format.";
+
+    private final AsciiArtAlgorithm asciiArtAlgorithm;
+
+    /**
+     * Constructs a new SpeculationCommand.
+     * @param asciiArtAlgorithm The algorithm to be used for the ASCII Art
+     */
+    public SpeculationCommand(AsciiArtAlgorithm asciiArtAlgorithm) {
+        this.asciiArtAlgorithm = asciiArtAlgorithm;
+    }
+
+    /**
+     * Executes the command, turning the speculative mode of the ASCII Art algorithm on or off.
+     * @param arguments The arguments for the command - "on" or "off"
+     * @param output The stream the command prints to
+     * @throws ShellCommandException If the command was not executed successfully
+     */
+    @Override
+    public void execute(String[] arguments, PrintStream output) throws ShellCommandException {
+        if (1 != arguments.length) {
+            throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
+        }
+
+        switch (arguments[0]) {
+            case "on":
+                asciiArtAlgorithm.setSpeculative(true);
+                break;
+            case "off":
+                asciiArtAlgorithm.setSpeculative(false);
+                break;
+            default:
+                throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
+        }
+    }
+}
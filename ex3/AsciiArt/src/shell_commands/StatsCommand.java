@@ -0,0 +1,77 @@
+package shell_commands;
+
+import exceptions.ShellCommandException;
+import instrumentation.Stage;
+import instrumentation.StageStatistics;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * A command that outputs the timing and allocation statistics of each stage of the conversions,
+ * both of its last run and cumulative, or resets them.
+ * @author Nimrod M.
+ */
+public class StatsCommand implements ShellCommand {
+
+    private static final String RESET_ARGUMENT = "reset";
+    private static final String INVALID_ARGUMENT_MESSAGE = "Did not show stats due to incorrect format.";
+    private static final String HEADER_FORMAT = "%-9s %6s %12s %12s %12s %12s%n";
+    private static final String ROW_FORMAT = "%-9s %6d %12.3f %12.3f %12s %12s%n";
+    private static final String UNAVAILABLE_BYTES = "n/a";
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final long BYTES_PER_KB = 1024;
+
+    private final StageStatistics statistics;
+
+    /**
+     * Constructs a new StatsCommand, of the global stage statistics.
+     */
+    public StatsCommand() {
+        this(StageStatistics.getGlobal());
+    }
+
+    /**
+     * Constructs a new StatsCommand.
+     * @param statistics The statistics to be shown
+     */
+    public StatsCommand(StageStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Executes the command, outputting a row of statistics for each stage to the user (the output stream).
+     * The allocations are those of the thread running each stage, in KB,
+     * unavailable for stages which were run in parallel (since the statistics were reset).
+     * @param arguments The arguments for the command - none, or "reset" to reset the statistics
+     * @param output The stream the command prints to
+     * @throws ShellCommandException If the command was not executed successfully
+     */
+    @Override
+    public void execute(String[] arguments, PrintStream output) throws ShellCommandException {
+        if (0 != arguments.length) {
+            if ((1 != arguments.length) || !RESET_ARGUMENT.equals(arguments[0])) {
+                throw new ShellCommandException(INVALID_ARGUMENT_MESSAGE);
+            }
+            statistics.reset();
+            return;
+        }
+
+        output.printf(HEADER_FORMAT, "stage", "runs", "last ms", "total ms", "last KB", "total KB");
+        for (Stage stage : Stage.values()) {
+            output.printf(ROW_FORMAT, stage.name().toLowerCase(Locale.ROOT), statistics.getRuns(stage),
+                    statistics.getLastNanos(stage) / NANOS_PER_MILLI,
+                    statistics.getTotalNanos(stage) / NANOS_PER_MILLI,
+                    formatBytes(statistics.getLastAllocatedBytes(stage)),
+                    formatBytes(statistics.getTotalAllocatedBytes(stage)));
+        }
+    }
+
+    /**
+     * @param bytes A number of bytes, or StageStatistics.UNAVAILABLE
+     * @return The number of KB, or a placeholder if it is unavailable
+     */
+    private static String formatBytes(long bytes) {
+        return (StageStatistics.UNAVAILABLE == bytes) ? UNAVAILABLE_BYTES : Long.toString(bytes / BYTES_PER_KB);
+    }
+}